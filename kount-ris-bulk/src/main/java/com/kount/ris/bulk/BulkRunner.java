@@ -0,0 +1,553 @@
+package com.kount.ris.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kount.ris.Inquiry;
+import com.kount.ris.KountRisClient;
+import com.kount.ris.Request;
+import com.kount.ris.Response;
+import com.kount.ris.Update;
+import com.kount.ris.transport.RateLimitingTransport;
+import com.kount.ris.util.UpdateMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a file of RIS Inquiries or Updates, such as historical Inquiries to back-test
+ * rule changes or a batch of chargeback Updates, and writes the Responses to a file.
+ * </p>
+ * Input records are JSON lines or CSV rows of RIS parameters (see {@link RecordFormat}).
+ * A record whose MODE is an Update mode (U or X), or that has a TRAN and no MODE, is sent
+ * as an {@link Update}; any other record as an {@link Inquiry}. The output holds one JSON
+ * line per input record, in input order: {"record":n,"response":{...}} or
+ * {"record":n,"error":"..."} for records that could not be read or sent.
+ * </p>
+ * Records are read one at a time and sent with {@link KountRisClient#processAsync(Request)}.
+ * At most the configured parallelism of records is in flight or waiting for an earlier
+ * record to complete, so memory use does not depend on the size of the input. Sending is
+ * optionally paced to a number of requests per second. To also back off when RIS
+ * throttles, give the client a {@link RateLimitingTransport}; the command line does so
+ * when a rate is given.
+ * </p>
+ * Progress is saved every {@value #DEFAULT_CHECKPOINT_INTERVAL} records by default, in a
+ * checkpoint file next to the output. A resumed run continues after the last checkpoint,
+ * so the records after it are sent again, and the checkpoint is deleted once the whole
+ * input was processed.
+ * </p>
+ * From the command line: {@code java -jar kount-ris-bulk-<version>-jar-with-dependencies.jar
+ * --url <RIS URL> --api-key-file <file> --input <file> --output <file> [options]}; run
+ * without arguments for the options.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class BulkRunner {
+
+    public static final int DEFAULT_PARALLELISM = 32;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final String USAGE = "Usage: java -jar kount-ris-bulk.jar --url <RIS URL> --api-key-file <file>"
+            + " --input <file> --output <file> [--format jsonl|csv] [--parallelism <n>] [--rate <requests per second>]"
+            + " [--timeout-ms <n>] [--checkpoint-interval <n>] [--resume]";
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(BulkRunner.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final KountRisClient client;
+
+    private final LongAdder succeeded = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private RecordFormat format;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    private double requestsPerSecond;
+
+    private Duration requestTimeout;
+
+    /**
+     * Constructor that accepts the client the records are sent with.
+     *
+     * @param client RIS client
+     */
+    public BulkRunner(KountRisClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        this.client = client;
+    }
+
+    /**
+     * Set the format of the input, instead of telling it from the file extension.
+     *
+     * @param format input format, null to tell it from the file extension
+     */
+    public void setFormat(RecordFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Set how many records may be in flight, or completed and waiting for an earlier
+     * record to be written.
+     *
+     * @param parallelism number of records
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the number of requests sent per second at most.
+     *
+     * @param requestsPerSecond requests per second, 0 to send as fast as the parallelism
+     *                          allows
+     */
+    public void setRate(double requestsPerSecond) {
+        if (requestsPerSecond < 0 || Double.isNaN(requestsPerSecond)) {
+            throw new IllegalArgumentException("rate must not be negative");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Set the time budget of each request, see
+     * {@link KountRisClient#processAsync(Request, Duration)}.
+     *
+     * @param timeout time budget, null for the transport's timeouts only
+     */
+    public void setRequestTimeout(Duration timeout) {
+        this.requestTimeout = timeout;
+    }
+
+    /**
+     * Set how many records are written between two checkpoints.
+     *
+     * @param records number of records
+     */
+    public void setCheckpointInterval(int records) {
+        if (records < 1) {
+            throw new IllegalArgumentException("checkpoint interval must be positive");
+        }
+        this.checkpointInterval = records;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of records answered by RIS without error
+     */
+    public long getSucceededCount() {
+        return succeeded.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of records that could not be read or sent, or were answered with an
+     *         error
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @param output output file
+     * @return checkpoint file of a run writing to the output file
+     */
+    public static Path getCheckpointFile(Path output) {
+        return output.resolveSibling(output.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Process every record of the input file and write the results to the output file.
+     *
+     * @param input  input file
+     * @param output output file, replaced unless resuming
+     * @param resume continue after the checkpoint of an earlier run writing to the output
+     *               file, if there is one
+     * @return number of records processed by this run
+     * @throws IOException          failed to read the input or to write the output; the
+     *                              run can be resumed
+     * @throws InterruptedException interrupted; the run can be resumed
+     */
+    public long run(Path input, Path output, boolean resume) throws IOException, InterruptedException {
+        Path checkpointFile = getCheckpointFile(output);
+        Checkpoint start = null;
+        if (resume) {
+            start = Checkpoint.load(checkpointFile);
+        } else {
+            Files.deleteIfExists(checkpointFile);
+        }
+        if (start != null) {
+            logger.info("Resuming {} after record {}", input, start.records);
+        } else {
+            start = Checkpoint.START;
+        }
+        RecordFormat inputFormat = format != null ? format : RecordFormat.of(input);
+        long processed;
+        try (RecordReader reader = RecordReader.open(input, inputFormat, start.inputOffset);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(start.outputLength);
+            channel.position(start.outputLength);
+            processed = new Run(reader, channel, checkpointFile, start).execute();
+        }
+        Files.deleteIfExists(checkpointFile);
+        return processed;
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--resume".equals(args[i])) {
+                options.put("resume", "true");
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                System.err.println(USAGE);
+                return 2;
+            }
+        }
+        String url = options.remove("url");
+        String apiKeyFile = options.remove("api-key-file");
+        String input = options.remove("input");
+        String output = options.remove("output");
+        if (url == null || apiKeyFile == null || input == null || output == null) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        try (KountRisClient client = new KountRisClient(new URL(url), new File(apiKeyFile))) {
+            BulkRunner runner = new BulkRunner(client);
+            boolean resume = options.remove("resume") != null;
+            String value;
+            if ((value = options.remove("format")) != null) {
+                runner.setFormat(RecordFormat.valueOf(value.toUpperCase(Locale.ROOT)));
+            }
+            if ((value = options.remove("parallelism")) != null) {
+                runner.setParallelism(Integer.parseInt(value));
+            }
+            if ((value = options.remove("rate")) != null) {
+                double rate = Double.parseDouble(value);
+                runner.setRate(rate);
+                if (rate > 0) {
+                    // paces each merchant as well, and slows down when RIS throttles
+                    client.setTransport(new RateLimitingTransport(client.getTransport(), rate));
+                }
+            }
+            if ((value = options.remove("timeout-ms")) != null) {
+                runner.setRequestTimeout(Duration.ofMillis(Long.parseLong(value)));
+            }
+            if ((value = options.remove("checkpoint-interval")) != null) {
+                runner.setCheckpointInterval(Integer.parseInt(value));
+            }
+            if (!options.isEmpty()) {
+                System.err.println("Unknown options " + options.keySet() + "\n" + USAGE);
+                return 2;
+            }
+            long processed = runner.run(Paths.get(input), Paths.get(output), resume);
+            System.out.println("Processed " + processed + " records: " + runner.getSucceededCount()
+                    + " succeeded, " + runner.getFailedCount() + " failed");
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + USAGE);
+            return 2;
+        } catch (Exception e) {
+            logger.error("Bulk run failed", e);
+            System.err.println("Bulk run failed: " + describe(e));
+            return 1;
+        }
+    }
+
+    static Request request(Map<String, String> params) {
+        String mode = params.get("MODE");
+        boolean update = mode == null
+                ? params.containsKey("TRAN")
+                : UpdateMode.NO_RESPONSE.toString().equals(mode) || UpdateMode.WITH_RESPONSE.toString().equals(mode);
+        Request request = update ? new Update() : new Inquiry();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            request.setParm(param.getKey(), param.getValue());
+        }
+        return request;
+    }
+
+    private static String describe(Throwable e) {
+        String name = e.getClass().getSimpleName();
+        return e.getMessage() == null ? name : name + ": " + e.getMessage();
+    }
+
+    /**
+     * Result of one record.
+     */
+    private static final class Slot {
+
+        final long record;
+
+        long inputOffset;
+
+        // the fields below are guarded by the window
+
+        boolean done;
+
+        Response response;
+
+        Throwable error;
+
+        Slot(long record) {
+            this.record = record;
+        }
+    }
+
+    /**
+     * One run: the calling thread reads and sends records, a writer thread writes their
+     * results in input order and saves the checkpoints.
+     */
+    private final class Run {
+
+        private final RecordReader reader;
+
+        private final FileChannel channel;
+
+        private final OutputStream out;
+
+        private final Path checkpointFile;
+
+        private final Checkpoint start;
+
+        private final Semaphore permits = new Semaphore(parallelism);
+
+        /**
+         * Records read and not yet written, at their record number modulo its length;
+         * also the monitor guarding the fields below and the slots.
+         */
+        private final Slot[] window = new Slot[parallelism];
+
+        private long end = -1;
+
+        private boolean aborted;
+
+        private volatile IOException writeFailure;
+
+        // written by the writer thread only
+
+        private long written;
+
+        private long inputOffset;
+
+        Run(RecordReader reader, FileChannel channel, Path checkpointFile, Checkpoint start) {
+            this.reader = reader;
+            this.channel = channel;
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            this.checkpointFile = checkpointFile;
+            this.start = start;
+            this.written = start.records;
+            this.inputOffset = start.inputOffset;
+        }
+
+        long execute() throws IOException, InterruptedException {
+            Thread writer = new Thread(this::writeAll, "kount-ris-bulk-writer");
+            writer.start();
+            boolean finished = false;
+            try {
+                readAll();
+                finished = true;
+            } finally {
+                synchronized (window) {
+                    aborted = !finished;
+                    window.notifyAll();
+                }
+                writer.join();
+            }
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+            return written - start.records;
+        }
+
+        private void readAll() throws IOException, InterruptedException {
+            long record = start.records;
+            long nextSend = System.nanoTime();
+            while (true) {
+                permits.acquire();
+                if (writeFailure != null) {
+                    return;
+                }
+                Slot slot = new Slot(record);
+                Map<String, String> params;
+                try {
+                    params = reader.next();
+                    if (params == null) {
+                        break;
+                    }
+                } catch (IllegalArgumentException e) {
+                    params = null;
+                    slot.error = e;
+                }
+                slot.inputOffset = reader.position();
+                synchronized (window) {
+                    window[(int) (record % window.length)] = slot;
+                }
+                record++;
+                if (params == null) {
+                    complete(slot, null, slot.error);
+                    continue;
+                }
+                if (requestsPerSecond > 0) {
+                    long now = System.nanoTime();
+                    if (nextSend > now) {
+                        TimeUnit.NANOSECONDS.sleep(nextSend - now);
+                    }
+                    nextSend = Math.max(nextSend, now) + (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+                }
+                send(params).whenComplete((response, e) -> complete(slot, response, e));
+            }
+            synchronized (window) {
+                end = record;
+                window.notifyAll();
+            }
+        }
+
+        private CompletableFuture<Response> send(Map<String, String> params) {
+            try {
+                Request request = request(params);
+                return requestTimeout != null
+                        ? client.processAsync(request, requestTimeout)
+                        : client.processAsync(request);
+            } catch (RuntimeException e) {
+                CompletableFuture<Response> result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+                return result;
+            }
+        }
+
+        private void complete(Slot slot, Response response, Throwable error) {
+            while ((error instanceof CompletionException || error instanceof ExecutionException)
+                    && error.getCause() != null) {
+                error = error.getCause();
+            }
+            synchronized (window) {
+                slot.response = response;
+                slot.error = error;
+                slot.done = true;
+                window.notifyAll();
+            }
+        }
+
+        private void writeAll() {
+            try {
+                Slot slot;
+                while ((slot = awaitNext()) != null) {
+                    write(slot);
+                    written++;
+                    inputOffset = slot.inputOffset;
+                    permits.release();
+                    if ((written - start.records) % checkpointInterval == 0) {
+                        checkpoint();
+                    }
+                }
+                checkpoint();
+            } catch (IOException e) {
+                writeFailure = e;
+                permits.release(window.length);
+            } catch (InterruptedException e) {
+                writeFailure = new IOException("Interrupted while writing results", e);
+                permits.release(window.length);
+            }
+        }
+
+        /**
+         * Wait for the result of the next record in input order.
+         *
+         * @return next record, or null when every record was written or the run was
+         *         aborted
+         */
+        private Slot awaitNext() throws InterruptedException {
+            int index = (int) (written % window.length);
+            synchronized (window) {
+                while (true) {
+                    if (written == end) {
+                        return null;
+                    }
+                    Slot slot = window[index];
+                    if (slot != null && slot.record == written && slot.done) {
+                        window[index] = null;
+                        return slot;
+                    }
+                    if (aborted) {
+                        return null;
+                    }
+                    window.wait();
+                }
+            }
+        }
+
+        private void write(Slot slot) throws IOException {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("record", slot.record + 1);
+            if (slot.response != null) {
+                line.put("response", new TreeMap<>(slot.response.getParams()));
+                if (slot.response.getErrorCode() != null) {
+                    failed.increment();
+                } else {
+                    succeeded.increment();
+                }
+            } else {
+                line.put("error", slot.error != null ? describe(slot.error) : "No response");
+                failed.increment();
+            }
+            out.write(mapper.writeValueAsBytes(line));
+            out.write('\n');
+        }
+
+        private void checkpoint() throws IOException {
+            out.flush();
+            channel.force(false);
+            new Checkpoint(written, inputOffset, channel.position()).save(checkpointFile);
+            logger.debug("Checkpoint after record {}", written);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kount.ris.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a bulk run: the number of records whose result was written, where the next
+ * record starts in the input file and how long the output file was at that point.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+final class Checkpoint {
+
+    static final Checkpoint START = new Checkpoint(0, 0, 0);
+
+    final long records;
+
+    final long inputOffset;
+
+    final long outputLength;
+
+    Checkpoint(long records, long inputOffset, long outputLength) {
+        this.records = records;
+        this.inputOffset = inputOffset;
+        this.outputLength = outputLength;
+    }
+
+    /**
+     * Load a checkpoint.
+     *
+     * @param file checkpoint file
+     * @return checkpoint, or null if there is none
+     * @throws IOException failed to read the file, or it is malformed
+     */
+    static Checkpoint load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            return new Checkpoint(Long.parseLong(properties.getProperty("records")),
+                    Long.parseLong(properties.getProperty("input.offset")),
+                    Long.parseLong(properties.getProperty("output.length")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Replace the checkpoint file atomically, so a crash leaves either the previous or
+     * this checkpoint.
+     *
+     * @param file checkpoint file
+     * @throws IOException failed to write the file
+     */
+    void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("records=" + records + "\n");
+            writer.write("input.offset=" + inputOffset + "\n");
+            writer.write("output.length=" + outputLength + "\n");
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.kount.ris.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines of a file and keeps track of the byte offset reached, so reading can
+ * be resumed there.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int next;
+
+    private int limit;
+
+    private byte[] line = new byte[256];
+
+    private long position;
+
+    LineReader(Path file, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        this.in = Channels.newInputStream(channel);
+        this.position = offset;
+    }
+
+    /**
+     * Read the next line, without its line terminator.
+     *
+     * @return line, or null at the end of the file
+     * @throws IOException failed to read the file
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        boolean terminated = false;
+        while (!terminated) {
+            if (next == limit) {
+                limit = in.read(buffer);
+                next = 0;
+                if (limit < 0) {
+                    limit = 0;
+                    if (length == 0) {
+                        return null;
+                    }
+                    break;
+                }
+            }
+            int start = next;
+            while (next < limit && buffer[next] != '\n') {
+                next++;
+            }
+            int count = next - start;
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(buffer, start, line, length, count);
+            length += count;
+            position += count;
+            if (next < limit) {
+                // skip the terminator
+                next++;
+                position++;
+                terminated = true;
+            }
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter
+     *
+     * @return byte offset of the next line
+     */
+    long position() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
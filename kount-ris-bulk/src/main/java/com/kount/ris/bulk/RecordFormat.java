@@ -0,0 +1,35 @@
+package com.kount.ris.bulk;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Input file formats read by {@link BulkRunner}. Each record holds RIS parameters keyed
+ * by their RIS names, such as SESS, ORDR, TOTL or TRAN.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public enum RecordFormat {
+
+    /**
+     * One flat JSON object per line.
+     */
+    JSONL,
+
+    /**
+     * Comma separated values, RFC 4180 quoting, with a header line of parameter names.
+     */
+    CSV;
+
+    /**
+     * Get the format of a file from its extension: .csv for CSV, JSONL otherwise.
+     *
+     * @param file input file
+     * @return format of the file
+     */
+    public static RecordFormat of(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSONL;
+    }
+}
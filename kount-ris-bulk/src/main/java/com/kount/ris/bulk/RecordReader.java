@@ -0,0 +1,212 @@
+package com.kount.ris.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the records of an input file one at a time, keeping only the current record in
+ * memory, and tells the byte offset reached so a resumed run can continue from there.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+abstract class RecordReader implements Closeable {
+
+    final LineReader lines;
+
+    RecordReader(LineReader lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Open an input file.
+     *
+     * @param file   input file
+     * @param format format of the file
+     * @param offset byte offset of the first record to read, 0 for the start of the file
+     * @return reader
+     * @throws IOException failed to open the file or to read the CSV header
+     */
+    static RecordReader open(Path file, RecordFormat format, long offset) throws IOException {
+        if (format == RecordFormat.CSV) {
+            return CsvReader.open(file, offset);
+        }
+        return new JsonLinesReader(new LineReader(file, offset));
+    }
+
+    /**
+     * Read the next record. Blank lines are skipped.
+     *
+     * @return RIS parameters of the record, or null at the end of the file
+     * @throws IOException              failed to read the file
+     * @throws IllegalArgumentException the record is malformed; it is skipped and the
+     *                                  next call reads the one after it
+     */
+    abstract Map<String, String> next() throws IOException;
+
+    /**
+     * Getter
+     *
+     * @return byte offset following the last record read
+     */
+    long position() {
+        return lines.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+
+    private static final class JsonLinesReader extends RecordReader {
+
+        private static final ObjectMapper mapper = new ObjectMapper();
+
+        JsonLinesReader(LineReader lines) {
+            super(lines);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            JsonNode node;
+            try {
+                node = mapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage(), e);
+            }
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Record is not a JSON object");
+            }
+            Map<String, String> params = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                if (value.isNull()) {
+                    continue;
+                }
+                if (!value.isValueNode()) {
+                    throw new IllegalArgumentException("Field " + field.getKey() + " is not a string or number");
+                }
+                params.put(field.getKey(), value.asText());
+            }
+            return params;
+        }
+    }
+
+    private static final class CsvReader extends RecordReader {
+
+        private final List<String> header;
+
+        private CsvReader(LineReader lines, List<String> header) {
+            super(lines);
+            this.header = header;
+        }
+
+        static CsvReader open(Path file, long offset) throws IOException {
+            List<String> header;
+            LineReader lines = new LineReader(file, 0);
+            try {
+                header = readFields(lines);
+            } catch (IllegalArgumentException e) {
+                lines.close();
+                throw new IOException("Malformed CSV header in " + file, e);
+            }
+            if (header == null) {
+                header = new ArrayList<>();
+            }
+            if (offset > lines.position()) {
+                lines.close();
+                lines = new LineReader(file, offset);
+            }
+            return new CsvReader(lines, header);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            List<String> fields = readFields(lines);
+            if (fields == null) {
+                return null;
+            }
+            if (fields.size() != header.size()) {
+                throw new IllegalArgumentException("Expected " + header.size() + " fields, found " + fields.size());
+            }
+            Map<String, String> params = new LinkedHashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                if (!fields.get(i).isEmpty()) {
+                    params.put(header.get(i), fields.get(i));
+                }
+            }
+            return params;
+        }
+
+        /**
+         * Read the fields of one record, which spans several lines where a quoted field
+         * holds line breaks.
+         */
+        private static List<String> readFields(LineReader lines) throws IOException {
+            String line;
+            do {
+                line = lines.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isEmpty());
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                    line = lines.readLine();
+                    if (line == null) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.kount.ris.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kount.ris.KountRisClient;
+import com.kount.ris.Response;
+import com.kount.ris.transport.Transport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkRunnerTest {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void testOrderedOutput() throws Exception {
+		Path input = directory.resolve("inquiries.jsonl");
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			lines.add("{\"SESS\":\"S" + i + "\",\"TOTL\":" + i + "}");
+			if (i == 100) {
+				lines.add("");
+				lines.add("{\"SESS\":");
+			}
+		}
+		lines.add("{\"MODE\":\"U\",\"TRAN\":\"P01J0D2C1K2P\"}");
+		Files.write(input, lines, StandardCharsets.UTF_8);
+		Path output = directory.resolve("responses.jsonl");
+
+		StubTransport transport = new StubTransport();
+		BulkRunner runner = new BulkRunner(client(transport));
+		runner.setParallelism(8);
+		assertEquals(202, runner.run(input, output, false));
+
+		List<JsonNode> results = read(output);
+		assertEquals(202, results.size());
+		for (int i = 0; i < 202; i++) {
+			assertEquals(i + 1, results.get(i).get("record").asInt());
+		}
+		assertEquals("S100", results.get(100).get("response").get("SESS").asText());
+		assertTrue(results.get(101).get("error").asText().startsWith("IllegalArgumentException"));
+		assertEquals("S101", results.get(102).get("response").get("SESS").asText());
+		assertEquals("U", results.get(201).get("response").get("MODE").asText());
+		assertEquals(201, runner.getSucceededCount());
+		assertEquals(1, runner.getFailedCount());
+		assertFalse(Files.exists(BulkRunner.getCheckpointFile(output)));
+	}
+
+	@Test
+	public void testResumeAfterCheckpoint() throws Exception {
+		Path input = directory.resolve("inquiries.csv");
+		List<String> lines = new ArrayList<>();
+		lines.add("SESS,ORDR,NOTE");
+		for (int i = 0; i < 50; i++) {
+			lines.add(i == 30 ? "S30,O30,\"a, \"\"quoted\"\"\nnote\"" : "S" + i + ",O" + i + ",");
+		}
+		Files.write(input, lines, StandardCharsets.UTF_8);
+		Path output = directory.resolve("responses.jsonl");
+
+		StubTransport stalling = new StubTransport();
+		stalling.stallFrom = 25;
+		BulkRunner runner = new BulkRunner(client(stalling));
+		runner.setParallelism(4);
+		runner.setCheckpointInterval(10);
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread run = new Thread(() -> {
+			try {
+				runner.run(input, output, false);
+			} catch (Exception e) {
+				failure.set(e);
+			}
+		});
+		run.start();
+		for (int i = 0; i < 500 && stalling.sent.size() < 29; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		run.interrupt();
+		run.join(5000);
+		assertTrue(failure.get() instanceof InterruptedException);
+		assertTrue(Files.exists(BulkRunner.getCheckpointFile(output)));
+
+		StubTransport transport = new StubTransport();
+		BulkRunner resumed = new BulkRunner(client(transport));
+		assertEquals(25, resumed.run(input, output, true));
+		assertEquals("S25", transport.sent.get(0).get("SESS"));
+		assertEquals("a, \"quoted\"\nnote", transport.sent.get(5).get("NOTE"));
+
+		List<JsonNode> results = read(output);
+		assertEquals(50, results.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals("S" + i, results.get(i).get("response").get("SESS").asText());
+		}
+		assertFalse(Files.exists(BulkRunner.getCheckpointFile(output)));
+	}
+
+	private static KountRisClient client(Transport transport) {
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		return client;
+	}
+
+	private static List<JsonNode> read(Path output) throws Exception {
+		List<JsonNode> results = new ArrayList<>();
+		for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+			JsonNode result = mapper.readTree(line);
+			assertNotNull(result.get("record"));
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Answers after a random delay, so responses complete out of order.
+	 */
+	private static class StubTransport extends Transport {
+
+		final List<Map<String, String>> sent = new CopyOnWriteArrayList<>();
+
+		volatile int stallFrom = Integer.MAX_VALUE;
+
+		@Override
+		public Response sendRequest(Map<String, String> params) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+			sent.add(params);
+			CompletableFuture<Response> result = new CompletableFuture<>();
+			String session = params.get("SESS");
+			if (session != null && Integer.parseInt(session.substring(1)) >= stallFrom) {
+				return result;
+			}
+			Map<String, String> response = new HashMap<>();
+			response.put("MODE", params.get("MODE"));
+			if (session != null) {
+				response.put("SESS", session);
+			}
+			response.put("TRAN", "P01J0D2C1K2P");
+			long delay = ThreadLocalRandom.current().nextLong(5);
+			CompletableFuture.runAsync(() -> {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				result.complete(new Response(response));
+			});
+			return result;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.kount.ris;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Response synthesized by the SDK when RIS could not be asked, carrying a decision
+ * configured by the merchant.
+ * </p>
+ * The request identifiers (MODE, MERC, SESS, ORDR) are echoed, AUTO holds the configured
+ * decision and no rules, warnings or counters are reported. There is no transaction id or
+ * score. {@link #isFallback()} returns true so the order can be flagged for a later
+ * update or manual review.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class FallbackResponse extends Response {
+
+	/**
+	 * Why the fallback was used.
+	 */
+	private final String fallbackReason;
+
+	/**
+	 * Constructor that accepts the request parameters, the decision to return and the
+	 * reason RIS was not asked.
+	 *
+	 * @param requestParams
+	 *            Parameters of the request that was not sent
+	 * @param auto
+	 *            Decision to return, e.g. "R" for review
+	 * @param reason
+	 *            Why the fallback was used
+	 */
+	public FallbackResponse(Map<String, String> requestParams, String auto, String reason) {
+		super(fallbackParams(requestParams, auto));
+		this.fallbackReason = reason;
+	}
+
+	private static Map<String, String> fallbackParams(Map<String, String> requestParams, String auto) {
+		Map<String, String> p = new HashMap<>();
+		for (String key : new String[] { "VERS", "MODE", "MERC", "SESS", "ORDR" }) {
+			if (requestParams.get(key) != null) {
+				p.put(key, requestParams.get(key));
+			}
+		}
+		p.put("AUTO", auto);
+		p.put("RULES_TRIGGERED", "0");
+		p.put("WARNING_COUNT", "0");
+		p.put("COUNTERS_TRIGGERED", "0");
+		return p;
+	}
+
+	@Override
+	public boolean isFallback() {
+		return true;
+	}
+
+	/**
+	 * Get the reason RIS was not asked.
+	 *
+	 * @return Fallback reason
+	 */
+	public String getFallbackReason() {
+		return fallbackReason;
+	}
+}
@@ -1,16 +1,23 @@
 package com.kount.ris;
 
 import com.kount.ris.transport.BearerAuthResponse;
+import com.kount.ris.transport.ConcurrencyLimitingTransport;
+import com.kount.ris.transport.DelegatingTransport;
+import com.kount.ris.transport.HedgingTransport;
 import com.kount.ris.transport.HttpApiTransport;
 import com.kount.ris.transport.KountHttpTransport;
+import com.kount.ris.transport.PriorityTransport;
+import com.kount.ris.transport.SingleFlightTransport;
 import com.kount.ris.transport.Transport;
 import com.kount.ris.util.RisException;
 import com.kount.ris.util.RisResponseException;
 import com.kount.ris.util.RisTransportException;
+import org.apache.hc.core5.pool.PoolStats;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.naming.ConfigurationException;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,6 +26,8 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller class for the Kount RIS SDK.
@@ -30,7 +39,7 @@ import java.nio.file.Paths;
  * @version $Id$
  * @copyright 2025 Equifax
  */
-public class KountRisClient {
+public class KountRisClient implements Closeable {
 
 	/**
 	 * Logger.
@@ -52,6 +61,26 @@ public class KountRisClient {
 	 */
 	protected String apiKey;
 
+	/**
+	 * Dispatcher sending Updates in the background, created on first use.
+	 */
+	private UpdateDispatcher updateDispatcher;
+
+	/**
+	 * Durable journal used by {@link #dispatch(Update)} instead of the dispatcher, if set.
+	 */
+	private volatile UpdateSpool updateSpool;
+
+	/**
+	 * Merges Updates of a transaction before they are dispatched, if set.
+	 */
+	private volatile UpdateCoalescer updateCoalescer;
+
+	/**
+	 * Index of the transaction IDs returned by RIS, if set.
+	 */
+	private volatile TransactionIndex transactionIndex;
+
 	/**
 	 * Explicit default constructor.
 	 */
@@ -308,6 +337,15 @@ public class KountRisClient {
 		transport = t;
 	}
 
+	/**
+	 * Get the transport requests are sent with.
+	 *
+	 * @return Transport
+	 */
+	public Transport getTransport() {
+		return transport;
+	}
+
 	/**
 	 * Set api key to use.
 	 * 
@@ -331,12 +369,274 @@ public class KountRisClient {
 	public Response process(Request r) throws RisException {
 		logger.trace("process()");
 		if (transport != null) {
-			return transport.sendRequest(r.getParams());
+			resolveTransactionId(r);
+			return recordTransactionId(transport.sendRequest(r.getParams()));
 		} else {
 			throw new RisTransportException("No transport was specified, unable to send request.");
 		}
 	}
 
+	/**
+	 * Performs the actions of sending, and parsing a RIS request within a time budget,
+	 * such as the share of a checkout's budget given to fraud screening. The budget
+	 * covers waiting for a connection, connecting and reading the response.
+	 *
+	 * @throws RisException
+	 *             A subclass of RisException will be thrown which will be of
+	 *             the type RisResponseException, RisTransportException, or
+	 *             RisDeadlineExceededException when the budget is spent.
+	 * @param r
+	 *            Request
+	 * @param timeout
+	 *            time budget of the request
+	 * @return Response
+	 */
+	public Response process(Request r, Duration timeout) throws RisException {
+		logger.trace("process()");
+		if (transport != null) {
+			resolveTransactionId(r);
+			return recordTransactionId(transport.sendRequest(r.getParams(), timeout));
+		} else {
+			throw new RisTransportException("No transport was specified, unable to send request.");
+		}
+	}
+
+	/**
+	 * Sends a RIS request without blocking the calling thread.
+	 * </p>
+	 * With {@link HttpApiTransport} the exchange is carried by a small set of I/O
+	 * reactor threads, and cancelling the future aborts it and frees its connection;
+	 * other transports complete the future before returning.
+	 *
+	 * @param r
+	 *            Request
+	 * @return future completed with the Response, or exceptionally with a
+	 *         RisTransportException
+	 */
+	public CompletableFuture<Response> processAsync(Request r) {
+		logger.trace("processAsync()");
+		if (transport != null) {
+			resolveTransactionId(r);
+			return recordTransactionId(transport.sendRequestAsync(r.getParams()));
+		}
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		result.completeExceptionally(new RisTransportException("No transport was specified, unable to send request."));
+		return result;
+	}
+
+	/**
+	 * Sends a RIS request without blocking the calling thread, within a time budget
+	 * covering the whole request.
+	 *
+	 * @param r
+	 *            Request
+	 * @param timeout
+	 *            time budget of the request
+	 * @return future completed with the Response, or exceptionally with a
+	 *         RisTransportException, a RisDeadlineExceededException when the budget
+	 *         is spent
+	 */
+	public CompletableFuture<Response> processAsync(Request r, Duration timeout) {
+		logger.trace("processAsync()");
+		if (transport != null) {
+			resolveTransactionId(r);
+			return recordTransactionId(transport.sendRequestAsync(r.getParams(), timeout));
+		}
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		result.completeExceptionally(new RisTransportException("No transport was specified, unable to send request."));
+		return result;
+	}
+
+	/**
+	 * Queues an Update to be sent in the background by the client's
+	 * {@link UpdateDispatcher}, or appends it to the {@link UpdateSpool} if one is set,
+	 * so the calling thread does not wait for RIS. Meant for Updates in
+	 * {@link com.kount.ris.util.UpdateMode#NO_RESPONSE} mode, the default, whose response
+	 * is not needed.
+	 *
+	 * @param u
+	 *            Update
+	 * @return true if the Update was queued, false if it was rejected and reported to
+	 *         the failure listener
+	 */
+	public boolean dispatch(Update u) {
+		resolveTransactionId(u);
+		UpdateCoalescer coalescer = updateCoalescer;
+		if (coalescer != null) {
+			return coalescer.add(u);
+		}
+		return enqueue(u);
+	}
+
+	private boolean enqueue(Update u) {
+		UpdateSpool spool = updateSpool;
+		if (spool != null) {
+			return spool.dispatch(u);
+		}
+		return getUpdateDispatcher().dispatch(u);
+	}
+
+	/**
+	 * Keep the transaction IDs returned by RIS in the given index, by session ID and
+	 * order number, and fill in the transaction ID of Updates that have none from it
+	 * before they are sent or dispatched.
+	 *
+	 * @param index
+	 *            transaction index, null to stop indexing
+	 */
+	public void setTransactionIndex(TransactionIndex index) {
+		transactionIndex = index;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return transaction index, or null if none is set
+	 */
+	public TransactionIndex getTransactionIndex() {
+		return transactionIndex;
+	}
+
+	private void resolveTransactionId(Request r) {
+		TransactionIndex index = transactionIndex;
+		if (index != null && r instanceof Update) {
+			index.resolve((Update) r);
+		}
+	}
+
+	private Response recordTransactionId(Response response) {
+		TransactionIndex index = transactionIndex;
+		if (index != null) {
+			index.record(response);
+		}
+		return response;
+	}
+
+	private CompletableFuture<Response> recordTransactionId(CompletableFuture<Response> result) {
+		TransactionIndex index = transactionIndex;
+		if (index != null) {
+			// a side branch, so cancelling the returned future still aborts the exchange
+			result.thenAccept(index::record);
+		}
+		return result;
+	}
+
+	/**
+	 * Make {@link #dispatch(Update)} merge the Updates of a transaction (TRAN) arriving
+	 * within the given window into one request, the last value winning for each field.
+	 * Updates with a refund or chargeback status are sent at once. See
+	 * {@link UpdateCoalescer}.
+	 *
+	 * @param windowMillis
+	 *            how long Updates of a transaction are held for merging, 0 to stop
+	 *            coalescing and pass on the Updates held
+	 */
+	public void setUpdateCoalescing(long windowMillis) {
+		UpdateCoalescer previous;
+		synchronized (this) {
+			previous = updateCoalescer;
+			if (windowMillis > 0 && previous != null) {
+				previous.setWindow(windowMillis);
+				return;
+			}
+			updateCoalescer = windowMillis > 0 ? new UpdateCoalescer(this::enqueue, windowMillis) : null;
+		}
+		if (previous != null) {
+			previous.close();
+		}
+	}
+
+	/**
+	 * Make {@link #dispatch(Update)} append Updates to a durable journal, so they
+	 * survive a restart or a RIS outage. The spool is closed together with this client.
+	 * A spool in use until now is closed, which keeps its unsent Updates on disk and
+	 * unlocks its directory.
+	 *
+	 * @param spool
+	 *            spool sending through this client, null to go back to the in-memory
+	 *            dispatcher
+	 */
+	public void setUpdateSpool(UpdateSpool spool) {
+		UpdateSpool previous;
+		synchronized (this) {
+			previous = updateSpool;
+			updateSpool = spool;
+		}
+		if (previous != null && previous != spool) {
+			try {
+				previous.close();
+			} catch (IOException e) {
+				logger.warn("Could not flush the previous RIS Update spool", e);
+			}
+		}
+	}
+
+	/**
+	 * Get the dispatcher used by {@link #dispatch(Update)}, creating one with the default
+	 * queue capacity and number of workers on first use.
+	 *
+	 * @return Update dispatcher
+	 */
+	public synchronized UpdateDispatcher getUpdateDispatcher() {
+		if (updateDispatcher == null) {
+			updateDispatcher = new UpdateDispatcher(this);
+		}
+		return updateDispatcher;
+	}
+
+	/**
+	 * Use the given dispatcher for {@link #dispatch(Update)}, e.g. one with a larger
+	 * queue. A dispatcher in use until now is closed, which waits for its queued Updates.
+	 *
+	 * @param dispatcher
+	 *            Update dispatcher sending through this client
+	 */
+	public void setUpdateDispatcher(UpdateDispatcher dispatcher) {
+		UpdateDispatcher previous;
+		synchronized (this) {
+			previous = updateDispatcher;
+			updateDispatcher = dispatcher;
+		}
+		if (previous != null && previous != dispatcher) {
+			previous.close();
+		}
+	}
+
+	/**
+	 * Closes the transport, releasing its connection pools and I/O threads. Updates
+	 * held for coalescing or queued by {@link #dispatch(Update)} are sent first, within the dispatcher's drain
+	 * timeout; a spool keeps its unsent Updates on disk.
+	 *
+	 * @throws IOException
+	 *             failed to close the transport
+	 */
+	@Override
+	public void close() throws IOException {
+		UpdateCoalescer coalescer;
+		synchronized (this) {
+			coalescer = updateCoalescer;
+			updateCoalescer = null;
+		}
+		if (coalescer != null) {
+			coalescer.close();
+		}
+		UpdateDispatcher dispatcher;
+		synchronized (this) {
+			dispatcher = updateDispatcher;
+			updateDispatcher = null;
+		}
+		if (dispatcher != null) {
+			dispatcher.close();
+		}
+		UpdateSpool spool = updateSpool;
+		if (spool != null) {
+			spool.close();
+		}
+		if (transport != null) {
+			transport.close();
+		}
+	}
+
 	/**
 	 * Parse a collection of key-value strings into a Response object.
 	 *
@@ -378,20 +678,157 @@ public class KountRisClient {
      * @param customBearerResponse Set custom bearer response from Okta
      */
     public void setCustomBearerResponse(BearerAuthResponse customBearerResponse) {
-        if (this.transport instanceof HttpApiTransport) {
-            if (customBearerResponse != null && ((HttpApiTransport) this.transport).isMigrationModeEnabled()) {
-                ((HttpApiTransport) this.transport).setCustomBearerResponse(customBearerResponse);
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            if (customBearerResponse != null && httpApiTransport.isMigrationModeEnabled()) {
+                httpApiTransport.setCustomBearerResponse(customBearerResponse);
             } else {
                 logger.warn("Custom bearer response was not set because it is null or migration mode is not enabled.");
             }
         }
     }
 
+    /**
+     * Enable HTTP/2 mode on the underlying HttpApiTransport so that concurrent requests
+     * are multiplexed over a few connections. Must be called before the first request.
+     *
+     * @param enabled true to send requests over HTTP/2
+     */
+    public void setHttp2Enabled(boolean enabled) {
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            httpApiTransport.setHttp2Enabled(enabled);
+        } else {
+            logger.warn("HTTP/2 mode is only supported by HttpApiTransport.");
+        }
+    }
+
+    /**
+     * Open and handshake connections to RIS (or Payments Fraud in migration mode) ahead of
+     * the first requests. See {@link HttpApiTransport#warmUp(int)}.
+     *
+     * @param connections number of live connections wanted
+     * @return number of connections that had to be opened, 0 if the transport is not an
+     *         HttpApiTransport
+     * @throws RisTransportException failed to open a connection
+     */
+    public int warmUp(int connections) throws RisTransportException {
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            return httpApiTransport.warmUp(connections);
+        }
+
+        logger.warn("Connection warm up is only supported by HttpApiTransport.");
+        return 0;
+    }
+
+    /**
+     * Keep at least the given number of live connections open through idle periods.
+     * See {@link HttpApiTransport#setKeepWarmConnections(int)}.
+     *
+     * @param connections minimum number of live connections, 0 to disable
+     */
+    public void setKeepWarmConnections(int connections) {
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            httpApiTransport.setKeepWarmConnections(connections);
+        } else {
+            logger.warn("Keeping connections warm is only supported by HttpApiTransport.");
+        }
+    }
+
+    /**
+     * Admit Inquiries ahead of Updates so that Update traffic cannot starve checkouts.
+     * The first call wraps the transport in a {@link PriorityTransport}; later calls change
+     * its capacity. See {@link PriorityTransport} for the queueing rules.
+     *
+     * @param capacity    requests in flight at most, no more than the connection pool size
+     * @param updateLimit Updates in flight at most, below capacity to keep room for Inquiries
+     */
+    public void setPriorityLanes(int capacity, int updateLimit) {
+        PriorityTransport priorityTransport = DelegatingTransport.unwrap(this.transport, PriorityTransport.class);
+        if (priorityTransport != null) {
+            priorityTransport.setCapacity(capacity, updateLimit);
+        } else {
+            transport = new PriorityTransport(transport, capacity, updateLimit);
+        }
+    }
+
+    /**
+     * Send identical Inquiries (same MERC, SESS, ORDR, MODE and parameters) only once while
+     * they are in flight, and answer repeats within the result window from the Response.
+     * The first call wraps the transport in a {@link SingleFlightTransport}; later calls
+     * change the window.
+     *
+     * @param resultWindowMillis how long a successful Response answers repeats, 0 to share
+     *            in-flight requests only
+     */
+    public void setSingleFlight(long resultWindowMillis) {
+        SingleFlightTransport singleFlight = DelegatingTransport.unwrap(this.transport, SingleFlightTransport.class);
+        if (singleFlight == null) {
+            singleFlight = new SingleFlightTransport(transport);
+            transport = singleFlight;
+        }
+        singleFlight.setResultWindow(resultWindowMillis);
+    }
+
+    /**
+     * Get the statistics of the connection pool owned by this client's transport.
+     *
+     * @return leased, pending, available and max connections, or null if the transport
+     *         is not an HttpApiTransport
+     */
+    public PoolStats getPoolStats() {
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            return httpApiTransport.getPoolStats();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the number of requests currently permitted in flight by the transport's
+     * {@link ConcurrencyLimitingTransport}.
+     *
+     * @return current concurrency limit, or -1 if requests are not limited
+     */
+    public int getConcurrencyLimit() {
+        ConcurrencyLimitingTransport limiter = DelegatingTransport.unwrap(this.transport, ConcurrencyLimitingTransport.class);
+        if (limiter != null) {
+            return limiter.getLimit();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Whether the concurrency limit is reached, so that a new request would queue or be
+     * rejected. Upstream services can check this to shed load early.
+     *
+     * @return true if the limit is reached, false if it is not or requests are not limited
+     */
+    public boolean isOverloaded() {
+        ConcurrencyLimitingTransport limiter = DelegatingTransport.unwrap(this.transport, ConcurrencyLimitingTransport.class);
+        return limiter != null && limiter.isOverloaded();
+    }
+
     public BearerAuthResponse getCustomBearerResponse() {
-        if (this.transport instanceof HttpApiTransport) {
-            return ((HttpApiTransport) this.transport).getBearerResponse();
+        HttpApiTransport httpApiTransport = httpApiTransport();
+        if (httpApiTransport != null) {
+            return httpApiTransport.getBearerResponse();
         }
 
         return null;
     }
+
+    /**
+     * Find the HttpApiTransport requests are sent with, also when it is wrapped by
+     * policy transports such as {@link HedgingTransport}.
+     *
+     * @return HttpApiTransport, or null if the transport is of another type
+     */
+    private HttpApiTransport httpApiTransport() {
+        return DelegatingTransport.unwrap(this.transport, HttpApiTransport.class);
+    }
 }
@@ -5,10 +5,10 @@ import com.kount.ris.util.RisResponseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +62,15 @@ public class Response {
 		return this.params.get(key);
 	}
 
+	/**
+	 * Get all parameters of the response.
+	 *
+	 * @return Read-only view of the response parameters
+	 */
+	public Map<String, String> getParams() {
+		return Collections.unmodifiableMap(this.params);
+	}
+
 	/**
 	 * Get the mode.
 	 * 
@@ -701,6 +710,16 @@ public class Response {
 		return events;
 	}
 
+	/**
+	 * Whether this response was synthesized by the SDK instead of returned by RIS, for
+	 * example by a circuit breaker while RIS is unavailable.
+	 *
+	 * @return true for a {@link FallbackResponse}
+	 */
+	public boolean isFallback() {
+		return false;
+	}
+
 	/**
 	 * Print all values in the object.
 	 *
@@ -814,22 +833,12 @@ public class Response {
 	 * @return Response
 	 */
 	public static Response parseResponse(Reader r) throws RisResponseException {
-		BufferedReader reader = new BufferedReader(r);
-		Map<String, String> responseFields = new HashMap<>();
-		String line;
 		try {
-			while (null != (line = reader.readLine())) {
-				// logger.debug(line);
-				String[] field = line.split("=", 2);
-				if (field.length > 1) {
-					responseFields.put(field[0], field[1]);
-				}
-			}
+			return new Response(ResponseParser.parse(r));
 		} catch (IOException ioe) {
 			logger.error("Error parsing RIS response", ioe);
 			throw new RisResponseException("Error parsing RIS response");
 		}
-        return new Response(responseFields);
 	}
 
 	/**
@@ -0,0 +1,208 @@
+package com.kount.ris;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written parser for the line based <code>KEY=value</code> RIS response format.
+ * </p>
+ * Scans characters for '=' and line terminators in a single reusable buffer instead of
+ * reading whole lines and splitting them. Keys that RIS is known to return are looked up
+ * in a static table and reused, so only the values allocate new strings.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+final class ResponseParser {
+
+	/**
+	 * Initial capacity of the field map, large enough for a typical response with rules,
+	 * counters and LexisNexis attributes without rehashing.
+	 */
+	private static final int EXPECTED_FIELDS = 256;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Highest index pre-registered for the numbered keys (RULE_ID_n, WARNING_n, ...).
+	 */
+	private static final int INDEXED_KEYS = 32;
+
+	private static final String[] FIXED_KEYS = {
+			"VERS", "MODE", "MERC", "SESS", "TRAN", "ORDR", "ERRO", "AUTO", "REAS", "REASON_CODE", "SCOR",
+			"OMNISCORE", "GEOX", "BRND", "VELO", "VMAX", "NETW", "KYCF", "REGN", "KAPT", "SITE", "PROXY", "EMAILS",
+			"HTTP_COUNTRY", "TIMEZONE", "CARDS", "PC_REMOTE", "DEVICES", "DEVICE_LAYERS", "MOBILE_FORWARDER",
+			"VOICE_DEVICE", "LOCALTIME", "MOBILE_TYPE", "FINGERPRINT", "FLASH", "LANGUAGE", "COUNTRY", "JAVASCRIPT",
+			"COOKIES", "MOBILE_DEVICE", "PIP_IPAD", "PIP_LAT", "PIP_LON", "PIP_COUNTRY", "PIP_REGION", "PIP_CITY",
+			"PIP_ORG", "IP_IPAD", "IP_LAT", "IP_LON", "IP_COUNTRY", "IP_REGION", "IP_CITY", "IP_ORG", "DDFS", "UAS",
+			"DSR", "OS", "BROWSER", "KC_CUSTOMER_ID", "KC_DECISION", "KC_WARNING_COUNT", "KC_ERROR_COUNT",
+			"KC_TRIGGERED_COUNT", "RULES_TRIGGERED", "WARNING_COUNT", "ERROR_COUNT", "COUNTERS_TRIGGERED",
+			"MASTERCARD", "PREVIOUSLY_WHITELISTED", "THREE_DS_MERCHANT_RESPONSE" };
+
+	private static final String[] ZERO_BASED_PREFIXES = {
+			"RULE_ID_", "RULE_DESCRIPTION_", "WARNING_", "ERROR_", "COUNTER_NAME_", "COUNTER_VALUE_" };
+
+	private static final String[] ONE_BASED_PREFIXES = { "KC_WARNING_", "KC_ERROR_" };
+
+	private static final String[] KC_EVENT_SUFFIXES = { "_DECISION", "_EXPRESSION", "_CODE" };
+
+	/**
+	 * Open addressing table of known keys, indexed by String.hashCode().
+	 */
+	private static final String[] KEY_TABLE;
+
+	/**
+	 * Shared instances for single character ASCII values such as "Y", "N", "A" or "0".
+	 */
+	private static final String[] SINGLE_CHAR_VALUES = new String[128];
+
+	static {
+		String[] keys = new String[FIXED_KEYS.length
+				+ (ZERO_BASED_PREFIXES.length + ONE_BASED_PREFIXES.length + KC_EVENT_SUFFIXES.length) * INDEXED_KEYS];
+		int count = 0;
+		for (String key : FIXED_KEYS) {
+			keys[count++] = key;
+		}
+		for (int i = 0; i < INDEXED_KEYS; i++) {
+			for (String prefix : ZERO_BASED_PREFIXES) {
+				keys[count++] = prefix + i;
+			}
+			for (String prefix : ONE_BASED_PREFIXES) {
+				keys[count++] = prefix + (i + 1);
+			}
+			for (String suffix : KC_EVENT_SUFFIXES) {
+				keys[count++] = "KC_EVENT_" + (i + 1) + suffix;
+			}
+		}
+
+		int size = Integer.highestOneBit(count * 4);
+		KEY_TABLE = new String[size];
+		for (int i = 0; i < count; i++) {
+			int slot = keys[i].hashCode() & (size - 1);
+			while (KEY_TABLE[slot] != null) {
+				slot = (slot + 1) & (size - 1);
+			}
+			KEY_TABLE[slot] = keys[i];
+		}
+
+		for (char c = 0; c < SINGLE_CHAR_VALUES.length; c++) {
+			SINGLE_CHAR_VALUES[c] = String.valueOf(c).intern();
+		}
+	}
+
+	private ResponseParser() {
+	}
+
+	/**
+	 * Parse a RIS response into a map of fields.
+	 * </p>
+	 * Lines are terminated by '\n', '\r' or "\r\n". The key is everything before the
+	 * first '=' and the value everything after it; lines without '=' are ignored.
+	 *
+	 * @param reader
+	 *            character stream returned by RIS
+	 * @return map of response fields
+	 * @throws IOException
+	 *             failed to read from the stream
+	 */
+	static Map<String, String> parse(Reader reader) throws IOException {
+		Map<String, String> fields = new HashMap<>(EXPECTED_FIELDS);
+		char[] buf = new char[BUFFER_SIZE];
+		int start = 0; // first char of the current line
+		int pos = 0; // next char to scan
+		int limit = 0; // end of valid data in buf
+		boolean skipLf = false;
+
+		for (;;) {
+			if (pos == limit) {
+				if (start > 0) {
+					// move the partial line to the front to make room
+					System.arraycopy(buf, start, buf, 0, limit - start);
+					pos -= start;
+					limit -= start;
+					start = 0;
+				}
+				if (limit == buf.length) {
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				}
+				int n = reader.read(buf, limit, buf.length - limit);
+				if (n < 0) {
+					addField(fields, buf, start, limit);
+					return fields;
+				}
+				limit += n;
+			}
+
+			if (skipLf) {
+				// second half of a "\r\n" terminator
+				skipLf = false;
+				if (buf[pos] == '\n') {
+					start = ++pos;
+					continue;
+				}
+			}
+
+			int end = pos;
+			while (end < limit && buf[end] != '\n' && buf[end] != '\r') {
+				end++;
+			}
+			if (end == limit) {
+				pos = end;
+				continue;
+			}
+
+			addField(fields, buf, start, end);
+			skipLf = buf[end] == '\r';
+			start = pos = end + 1;
+		}
+	}
+
+	private static void addField(Map<String, String> fields, char[] buf, int start, int end) {
+		int eq = start;
+		while (eq < end && buf[eq] != '=') {
+			eq++;
+		}
+		if (eq == end) {
+			return;
+		}
+		fields.put(key(buf, start, eq - start), value(buf, eq + 1, end - eq - 1));
+	}
+
+	private static String key(char[] buf, int offset, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buf[offset + i];
+		}
+		int mask = KEY_TABLE.length - 1;
+		for (int slot = hash & mask; KEY_TABLE[slot] != null; slot = (slot + 1) & mask) {
+			String candidate = KEY_TABLE[slot];
+			if (candidate.length() == length && matches(candidate, buf, offset)) {
+				return candidate;
+			}
+		}
+		return new String(buf, offset, length);
+	}
+
+	private static boolean matches(String candidate, char[] buf, int offset) {
+		for (int i = 0; i < candidate.length(); i++) {
+			if (candidate.charAt(i) != buf[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String value(char[] buf, int offset, int length) {
+		if (length == 0) {
+			return "";
+		}
+		if (length == 1 && buf[offset] < SINGLE_CHAR_VALUES.length) {
+			return SINGLE_CHAR_VALUES[buf[offset]];
+		}
+		return new String(buf, offset, length);
+	}
+}
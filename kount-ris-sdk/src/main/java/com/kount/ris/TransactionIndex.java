@@ -0,0 +1,313 @@
+package com.kount.ris;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process index from session ID (SESS) and order number (ORDR) to the transaction
+ * ID (TRAN) returned by RIS, so an Update can be addressed without looking the TRAN up
+ * elsewhere.
+ * </p>
+ * Entries live in a fixed-size open-addressing table held off the Java heap, 64 bytes per
+ * slot, and expire after {@link #DEFAULT_TTL} by default, matching the span over which a
+ * session ID must be unique. An insert probes at most {@value #MAX_PROBE} slots; when none
+ * of them is free or expired, the entry closest to expiring is evicted, so memory use is
+ * fixed by the capacity. Session IDs and order numbers longer than
+ * {@value #MAX_KEY_BYTES} bytes, and transaction IDs longer than {@value #MAX_TRAN_BYTES}
+ * bytes, are not indexed. An index is meant for the Requests of one merchant.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class TransactionIndex {
+
+    public static final Duration DEFAULT_TTL = Duration.ofDays(30);
+
+    static final int MAX_KEY_BYTES = 32;
+
+    static final int MAX_TRAN_BYTES = 16;
+
+    static final int MAX_PROBE = 16;
+
+    private static final int MAX_SLOTS = 1 << 24;
+
+    private static final int SLOT_SIZE = 64;
+
+    // slot layout: expiry (0 when the slot was never used), kind, lengths, key, TRAN
+
+    private static final int EXPIRY = 0;
+
+    private static final int KIND = 8;
+
+    private static final int KEY_LENGTH = 9;
+
+    private static final int TRAN_LENGTH = 10;
+
+    private static final int KEY = 11;
+
+    private static final int TRAN = KEY + MAX_KEY_BYTES;
+
+    private static final byte SESSION = 1;
+
+    private static final byte ORDER = 2;
+
+    private final ByteBuffer table;
+
+    private final int mask;
+
+    private final long ttlMs;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Constructor that accepts the number of slots, with the default time to live.
+     *
+     * @param capacity number of entries held at most, rounded up to a power of two; each
+     *                 Response takes one entry for its session ID and one for its order
+     *                 number
+     */
+    public TransactionIndex(int capacity) {
+        this(capacity, DEFAULT_TTL);
+    }
+
+    /**
+     * Constructor that accepts the number of slots and how long entries are kept.
+     *
+     * @param capacity number of entries held at most, rounded up to a power of two
+     * @param ttl      how long an entry is kept after it was recorded
+     */
+    public TransactionIndex(int capacity, Duration ttl) {
+        if (capacity < 1 || capacity > MAX_SLOTS) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_SLOTS);
+        }
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        int slots = Math.max(MAX_PROBE, Integer.highestOneBit(capacity - 1) << 1);
+        this.table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        this.mask = slots - 1;
+        this.ttlMs = ttl.toMillis();
+    }
+
+    /**
+     * Index the session ID and order number of a Response by its transaction ID.
+     * Responses without a transaction ID, such as errors, are ignored.
+     *
+     * @param response Response returned by RIS
+     */
+    public void record(Response response) {
+        String transactionId = response.getTransactionId();
+        if (transactionId == null || transactionId.isEmpty()) {
+            return;
+        }
+        byte[] tran = transactionId.getBytes(StandardCharsets.UTF_8);
+        if (tran.length > MAX_TRAN_BYTES) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() + ttlMs;
+        put(SESSION, response.getSessionId(), tran, expiry);
+        put(ORDER, response.getOrderNumber(), tran, expiry);
+    }
+
+    /**
+     * Find the transaction ID returned for a session ID.
+     *
+     * @param sessionId session ID of the Inquiry
+     * @return transaction ID, or null if unknown or expired
+     */
+    public String findBySessionId(String sessionId) {
+        return get(SESSION, sessionId);
+    }
+
+    /**
+     * Find the transaction ID returned for an order number.
+     *
+     * @param orderNumber order number of the Inquiry
+     * @return transaction ID, or null if unknown or expired
+     */
+    public String findByOrderNumber(String orderNumber) {
+        return get(ORDER, orderNumber);
+    }
+
+    /**
+     * Set the transaction ID of an Update that has none, from its session ID or else its
+     * order number.
+     *
+     * @param update Update to address
+     * @return true if the Update has a transaction ID now
+     */
+    public boolean resolve(Update update) {
+        String transactionId = update.getParams().get("TRAN");
+        if (transactionId != null && !transactionId.isEmpty()) {
+            return true;
+        }
+        transactionId = findBySessionId(update.getParams().get("SESS"));
+        if (transactionId == null) {
+            transactionId = findByOrderNumber(update.getParams().get("ORDR"));
+        }
+        if (transactionId == null) {
+            return false;
+        }
+        update.setTransactionId(transactionId);
+        return true;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of lookups that found a transaction ID
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of lookups that found none
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of entries dropped before expiring to make room for new ones
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of entries the index holds at most
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Drop every entry.
+     */
+    public synchronized void clear() {
+        for (int slot = 0; slot <= mask; slot++) {
+            table.putLong(slot * SLOT_SIZE + EXPIRY, 0);
+        }
+    }
+
+    private synchronized void put(byte kind, String id, byte[] tran, long expiry) {
+        byte[] key = key(id);
+        if (key == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int home = hash(kind, key);
+        int victim = -1;
+        long victimExpiry = Long.MAX_VALUE;
+        int free = -1;
+        for (int i = 0; i < MAX_PROBE; i++) {
+            int offset = ((home + i) & mask) * SLOT_SIZE;
+            long slotExpiry = table.getLong(offset + EXPIRY);
+            if (slotExpiry == 0) {
+                // never used, so the key is not further along
+                free = offset;
+                break;
+            }
+            if (matches(offset, kind, key)) {
+                write(offset, kind, key, tran, expiry);
+                return;
+            }
+            if (slotExpiry < victimExpiry) {
+                victim = offset;
+                victimExpiry = slotExpiry;
+            }
+        }
+        if (victim >= 0 && victimExpiry <= now) {
+            write(victim, kind, key, tran, expiry);
+        } else if (free >= 0) {
+            write(free, kind, key, tran, expiry);
+        } else {
+            evicted.increment();
+            write(victim, kind, key, tran, expiry);
+        }
+    }
+
+    private synchronized String get(byte kind, String id) {
+        byte[] key = key(id);
+        if (key != null) {
+            long now = System.currentTimeMillis();
+            int home = hash(kind, key);
+            for (int i = 0; i < MAX_PROBE; i++) {
+                int offset = ((home + i) & mask) * SLOT_SIZE;
+                long slotExpiry = table.getLong(offset + EXPIRY);
+                if (slotExpiry == 0) {
+                    break;
+                }
+                if (matches(offset, kind, key)) {
+                    if (slotExpiry <= now) {
+                        break;
+                    }
+                    hits.increment();
+                    byte[] tran = new byte[table.get(offset + TRAN_LENGTH)];
+                    for (int j = 0; j < tran.length; j++) {
+                        tran[j] = table.get(offset + TRAN + j);
+                    }
+                    return new String(tran, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private boolean matches(int offset, byte kind, byte[] key) {
+        if (table.get(offset + KIND) != kind || table.get(offset + KEY_LENGTH) != key.length) {
+            return false;
+        }
+        for (int j = 0; j < key.length; j++) {
+            if (table.get(offset + KEY + j) != key[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(int offset, byte kind, byte[] key, byte[] tran, long expiry) {
+        table.putLong(offset + EXPIRY, expiry);
+        table.put(offset + KIND, kind);
+        table.put(offset + KEY_LENGTH, (byte) key.length);
+        table.put(offset + TRAN_LENGTH, (byte) tran.length);
+        for (int j = 0; j < key.length; j++) {
+            table.put(offset + KEY + j, key[j]);
+        }
+        for (int j = 0; j < tran.length; j++) {
+            table.put(offset + TRAN + j, tran[j]);
+        }
+    }
+
+    private static byte[] key(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        return key.length <= MAX_KEY_BYTES ? key : null;
+    }
+
+    private static int hash(byte kind, byte[] key) {
+        int h = kind;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,214 @@
+package com.kount.ris;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Merges the Updates of one transaction (TRAN) arriving within a short window into a
+ * single request, such as an authorization status followed by AVS and CVV replies and a
+ * merchant acknowledgement.
+ * </p>
+ * The first Update of a transaction opens a window of {@value #DEFAULT_WINDOW_MS} ms by
+ * default. Updates arriving within it are merged into it, the last value winning for
+ * each field, and the merged Update is passed on when the window ends. An Update with a
+ * refund or chargeback status (RFCB) is passed on at once, merged with whatever was held
+ * for its transaction. Updates without TRAN are passed on unchanged.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class UpdateCoalescer implements Closeable {
+
+    public static final long DEFAULT_WINDOW_MS = 2000;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(UpdateCoalescer.class);
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "kount-ris-update-coalescer-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Predicate<Update> sink;
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private volatile long windowMs;
+
+    // the fields below are guarded by this
+
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    private boolean closed = false;
+
+    /**
+     * Constructor that accepts where merged Updates are passed on to and the window.
+     *
+     * @param sink         receives the merged Updates, such as
+     *                     {@link UpdateDispatcher#dispatch(Update)}; returns false if it
+     *                     rejected one
+     * @param windowMillis how long Updates of a transaction are held for merging
+     */
+    public UpdateCoalescer(Predicate<Update> sink, long windowMillis) {
+        if (sink == null) {
+            throw new IllegalArgumentException("sink must not be null");
+        }
+        this.sink = sink;
+        setWindow(windowMillis);
+    }
+
+    /**
+     * Set how long Updates of a transaction are held for merging. Applies to windows
+     * opened from now on.
+     *
+     * @param millis window in milliseconds
+     */
+    public void setWindow(long millis) {
+        windowMs = Math.max(0, millis);
+    }
+
+    /**
+     * Hold an Update for merging, or pass it on.
+     *
+     * @param update Update to send
+     * @return false if the Update was passed on and rejected, true otherwise
+     */
+    public boolean add(Update update) {
+        String transactionId = update.getParams().get("TRAN");
+        if (transactionId == null || transactionId.isEmpty()) {
+            return sink.test(update);
+        }
+        boolean flush = update.getParams().get("RFCB") != null || windowMs == 0;
+        Pending flushed;
+        synchronized (this) {
+            Pending held = pending.get(transactionId);
+            if (held != null) {
+                held.params.putAll(update.getParams());
+                coalesced.increment();
+            } else {
+                held = new Pending(update.getParams());
+            }
+            if (flush || closed) {
+                pending.remove(transactionId);
+                if (held.timeout != null) {
+                    held.timeout.cancel(false);
+                }
+                flushed = held;
+            } else {
+                if (held.timeout == null) {
+                    pending.put(transactionId, held);
+                    held.timeout = schedule(transactionId, held);
+                }
+                return true;
+            }
+        }
+        return sink.test(flushed.toUpdate());
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates merged into another one instead of being sent on their own
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of transactions with Updates held for merging
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Pass on every Update held, without waiting for its window to end.
+     */
+    public void flush() {
+        List<Pending> flushed;
+        synchronized (this) {
+            flushed = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Pending held : flushed) {
+            held.timeout.cancel(false);
+            pass(held);
+        }
+    }
+
+    /**
+     * Pass on every Update held and stop holding new ones.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Must hold the monitor, and the coalescer must not be closed.
+     */
+    private ScheduledFuture<?> schedule(String transactionId, Pending held) {
+        return timer.schedule(() -> {
+            synchronized (this) {
+                if (!pending.remove(transactionId, held)) {
+                    // flushed meanwhile
+                    return;
+                }
+            }
+            pass(held);
+        }, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void pass(Pending held) {
+        try {
+            sink.test(held.toUpdate());
+        } catch (RuntimeException e) {
+            logger.error("Could not pass on coalesced RIS Update", e);
+        }
+    }
+
+    /**
+     * Merged fields of one transaction.
+     */
+    private static final class Pending {
+
+        final Map<String, String> params;
+
+        ScheduledFuture<?> timeout;
+
+        Pending(Map<String, String> params) {
+            this.params = new LinkedHashMap<>(params);
+        }
+
+        Update toUpdate() {
+            Update update = new Update();
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                update.setParm(entry.getKey(), entry.getValue());
+            }
+            return update;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.kount.ris;
+
+import com.kount.ris.util.RisException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisResponseException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends Updates in the background, so that threads posting AUTH, MACK or RFCB changes do
+ * not wait for the RIS round trip.
+ * </p>
+ * Updates are queued in memory, up to the queue capacity, and sent in order of arrival
+ * by a small pool of worker threads through {@link KountRisClient#process(Request)}, so
+ * they pass the client's transport policies. What happens when the queue is full is set
+ * with {@link #setOverflowPolicy(OverflowPolicy)}.
+ * </p>
+ * Updates that cannot be sent, or that RIS answers with an error, are reported to the
+ * {@link FailureListener}; they are not retried. {@link #close()} stops accepting Updates
+ * and waits up to the drain timeout for the queued ones to be sent. Queued Updates are
+ * lost if the JVM exits without closing the dispatcher.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class UpdateDispatcher implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    public static final int DEFAULT_WORKERS = 2;
+    public static final long DEFAULT_MAX_OFFER_WAIT_MS = 1000;
+    public static final long DEFAULT_DRAIN_TIMEOUT_MS = 30000;
+
+    /**
+     * How often idle workers check whether the dispatcher was closed.
+     */
+    private static final long IDLE_POLL_MS = 200;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(UpdateDispatcher.class);
+
+    /**
+     * What {@link #dispatch(Update)} does when the queue is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Wait for room up to the maximum offer wait, then reject the Update.
+         */
+        BLOCK,
+
+        /**
+         * Reject the Update at once.
+         */
+        REJECT,
+
+        /**
+         * Send the Update on the calling thread.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Receives the Updates that were not sent or not accepted by RIS.
+     */
+    public interface FailureListener {
+
+        /**
+         * Called on the worker thread that sent the Update, or on the dispatching thread
+         * for rejected Updates.
+         *
+         * @param update Update that failed
+         * @param error  {@link RisOverloadedException} if it was rejected without being
+         *               sent, another RisTransportException if sending it failed, or a
+         *               RisResponseException if RIS answered with an error
+         */
+        void onFailure(Update update, RisException error);
+    }
+
+    private final KountRisClient client;
+
+    private final BlockingQueue<Update> queue;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    private volatile long maxOfferWaitMs = DEFAULT_MAX_OFFER_WAIT_MS;
+
+    private volatile long drainTimeoutMs = DEFAULT_DRAIN_TIMEOUT_MS;
+
+    private volatile FailureListener failureListener = (update, error) ->
+            logger.warn("RIS Update for transaction {} failed: {}", update.getParams().get("TRAN"), error.getMessage());
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor that accepts the client to send with, using the default queue capacity
+     * and number of workers.
+     *
+     * @param client client the Updates are sent with
+     */
+    public UpdateDispatcher(KountRisClient client) {
+        this(client, DEFAULT_QUEUE_CAPACITY, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructor that accepts the client to send with, the number of Updates that may be
+     * queued and the number of worker threads.
+     *
+     * @param client        client the Updates are sent with
+     * @param queueCapacity Updates queued at most
+     * @param workerCount   worker threads sending Updates
+     */
+    public UpdateDispatcher(KountRisClient client, int queueCapacity, int workerCount) {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        this.client = client;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::work, "kount-ris-update-dispatcher-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Set what {@link #dispatch(Update)} does when the queue is full.
+     *
+     * @param policy overflow policy, {@link OverflowPolicy#BLOCK} by default
+     */
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        overflowPolicy = policy;
+    }
+
+    /**
+     * Set how long {@link #dispatch(Update)} waits for room in a full queue under
+     * {@link OverflowPolicy#BLOCK}.
+     *
+     * @param millis maximum wait in milliseconds
+     */
+    public void setMaxOfferWait(long millis) {
+        maxOfferWaitMs = Math.max(0, millis);
+    }
+
+    /**
+     * Set how long {@link #close()} waits for queued Updates to be sent.
+     *
+     * @param millis drain timeout in milliseconds
+     */
+    public void setDrainTimeout(long millis) {
+        drainTimeoutMs = Math.max(0, millis);
+    }
+
+    /**
+     * Set the listener receiving failed Updates. By default failures are logged.
+     *
+     * @param listener failure listener
+     */
+    public void setFailureListener(FailureListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        failureListener = listener;
+    }
+
+    /**
+     * Queue an Update to be sent in the background.
+     *
+     * @param update Update to send
+     * @return true if the Update was queued or, under {@link OverflowPolicy#CALLER_RUNS},
+     *         sent; false if it was rejected and reported to the failure listener
+     */
+    public boolean dispatch(Update update) {
+        if (closed) {
+            return reject(update, "UpdateDispatcher is closed");
+        }
+        boolean queued;
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queued = queue.offer(update, maxOfferWaitMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return reject(update, "Interrupted while waiting for room in the Update queue");
+                }
+                break;
+            case CALLER_RUNS:
+                queued = queue.offer(update);
+                if (!queued) {
+                    send(update);
+                    return true;
+                }
+                break;
+            default:
+                queued = queue.offer(update);
+                break;
+        }
+        if (!queued) {
+            return reject(update, "Update queue is full");
+        }
+        // lost the race with close(): take it back unless a worker already did
+        if (closed && queue.remove(update)) {
+            return reject(update, "UpdateDispatcher is closed");
+        }
+        return true;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates waiting to be sent
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates sent and accepted by RIS
+     */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates that failed to send or were answered with an error
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates rejected without being sent
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stop accepting Updates and wait up to the drain timeout for the queued ones to be
+     * sent. Updates still queued after that are reported to the failure listener. The
+     * client is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        try {
+            for (Thread worker : workers) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0) {
+                    worker.join(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Update> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        if (!unsent.isEmpty()) {
+            logger.warn("{} queued RIS Updates were not sent before the dispatcher was closed", unsent.size());
+        }
+        for (Update update : unsent) {
+            reject(update, "UpdateDispatcher was closed before the Update was sent");
+        }
+    }
+
+    private void work() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Update update = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (update != null) {
+                    send(update);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(Update update) {
+        try {
+            Response response = client.process(update);
+            if (response.getErrorCode() != null) {
+                fail(update, new RisResponseException(response.getErrorCode()));
+            } else {
+                sent.increment();
+            }
+        } catch (RisException e) {
+            fail(update, e);
+        } catch (RuntimeException e) {
+            fail(update, new RisTransportException("An error occurred while sending the RIS Update", e));
+        }
+    }
+
+    private void fail(Update update, RisException error) {
+        failed.increment();
+        notifyListener(update, error);
+    }
+
+    private boolean reject(Update update, String message) {
+        rejected.increment();
+        notifyListener(update, new RisOverloadedException(message));
+        return false;
+    }
+
+    private void notifyListener(Update update, RisException error) {
+        try {
+            failureListener.onFailure(update, error);
+        } catch (RuntimeException e) {
+            logger.error("Update failure listener threw an exception", e);
+        }
+    }
+}
@@ -0,0 +1,725 @@
+package com.kount.ris;
+
+import com.kount.ris.transport.FormUrlEncoder;
+import com.kount.ris.transport.TransportErrors;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisException;
+import com.kount.ris.util.RisResponseException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue of outgoing Updates, so that refunds, chargebacks and authorization
+ * changes survive a restart of the process or an outage of RIS.
+ * </p>
+ * Updates are appended to a journal of memory-mapped segment files in a directory, and a
+ * background thread sends them in order of arrival through
+ * {@link KountRisClient#process(Request)}. An Update that failed for a transient reason
+ * (RIS could not be reached, was throttled or overloaded, or did not answer in time) is
+ * retried, with backoff, until it is sent. Any other failure, such as an error response
+ * or an unreadable one, would recur on every attempt and hold up the Updates behind it:
+ * the Update is reported to the {@link UpdateDispatcher.FailureListener} and dropped.
+ * Sent Updates are marked in the journal, and segments of which every Update was sent
+ * are deleted.
+ * </p>
+ * An appended Update is in the operating system's page cache and survives the process
+ * being killed. To survive a machine crash as well the segments are flushed to disk in
+ * batches, every {@value #DEFAULT_SYNC_INTERVAL_MS} ms by default, instead of on every
+ * append; {@link #sync()} flushes at once. Updates are sent at least once: one being sent
+ * when the process stops is sent again after the restart.
+ * </p>
+ * On start the segments left in the directory are verified in parallel and their unsent
+ * Updates are sent before new ones. A spool locks its directory until it is closed, so a
+ * second spool opened on the same directory, in this process or another, fails.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class UpdateSpool implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 100;
+
+    private static final long MIN_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    /**
+     * How long {@link #close()} waits for an Update being sent.
+     */
+    private static final long CLOSE_WAIT_MS = 10000;
+
+    private static final String SEGMENT_PREFIX = "updates-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String LOCK_FILE = "spool.lock";
+
+    /**
+     * Record layout: payload length (int), CRC32 of the payload (int), state (byte),
+     * payload. The length is written last, so a record with a length of zero was never
+     * completed and marks the end of the segment's data.
+     */
+    private static final int LENGTH_OFFSET = 0;
+    private static final int CRC_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int HEADER_SIZE = 9;
+
+    private static final byte PENDING = 0;
+    private static final byte SENT = 1;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(UpdateSpool.class);
+
+    private final KountRisClient client;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    /**
+     * Lock on the directory's lock file, held until the spool is closed.
+     */
+    private final FileLock lock;
+
+    private final Thread sender;
+
+    private final ScheduledExecutorService syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "kount-ris-update-spool-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private volatile UpdateDispatcher.FailureListener failureListener = (update, error) ->
+            logger.warn("Spooled RIS Update for transaction {} failed: {}", update.getParams().get("TRAN"), error.getMessage());
+
+    // the fields below are guarded by this
+
+    /**
+     * Segments oldest first; the last one is appended to.
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    private long nextSequence;
+
+    private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+    private ScheduledFuture<?> syncTask;
+
+    private boolean closed = false;
+
+    /**
+     * Constructor that accepts the client to send with and the directory of the journal,
+     * using the default segment size. Unsent Updates found in the directory are recovered.
+     *
+     * @param client    client the Updates are sent with
+     * @param directory journal directory, created if missing
+     * @throws IOException the directory is in use by another spool, or the journal
+     *                     could not be opened or recovered
+     */
+    public UpdateSpool(KountRisClient client, Path directory) throws IOException {
+        this(client, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor that accepts the client to send with, the directory of the journal and
+     * the size of its segment files. Unsent Updates found in the directory are recovered.
+     *
+     * @param client      client the Updates are sent with
+     * @param directory   journal directory, created if missing
+     * @param segmentSize size of a segment file in bytes, limits the size of one Update
+     * @throws IOException the directory is in use by another spool, or the journal
+     *                     could not be opened or recovered
+     */
+    public UpdateSpool(KountRisClient client, Path directory, int segmentSize) throws IOException {
+        if (client == null) {
+            throw new IllegalArgumentException("client must not be null");
+        }
+        this.client = client;
+        this.directory = directory;
+        this.segmentSize = Math.max(HEADER_SIZE + 1024, segmentSize);
+        Files.createDirectories(directory);
+        lock = lock(directory);
+
+        try {
+            List<Segment> recovered = recover();
+            for (Segment segment : recovered) {
+                if (segment.isDone()) {
+                    segment.delete();
+                } else {
+                    segments.addLast(segment);
+                    pending.addAndGet(segment.pendingAtRecovery);
+                }
+            }
+            nextSequence = recovered.isEmpty() ? 0 : recovered.get(recovered.size() - 1).sequence + 1;
+            segments.addLast(createSegment());
+        } catch (IOException | RuntimeException e) {
+            lock.channel().close();
+            throw e;
+        }
+        if (pending.get() > 0) {
+            logger.info("Recovered {} unsent RIS Updates from {}", pending.get(), directory);
+        }
+
+        setSyncInterval(DEFAULT_SYNC_INTERVAL_MS);
+        sender = new Thread(this::sendLoop, "kount-ris-update-spool-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Set how often appended Updates and sent marks are flushed to disk.
+     *
+     * @param millis sync interval in milliseconds, 0 to flush only on {@link #sync()} and
+     *               {@link #close()}
+     */
+    public synchronized void setSyncInterval(long millis) {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+        if (millis > 0 && !closed) {
+            syncTask = syncTimer.scheduleWithFixedDelay(this::syncQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Set how many segment files the journal may grow to while RIS cannot be reached.
+     * Appending beyond that fails.
+     *
+     * @param count maximum number of segments
+     */
+    public synchronized void setMaxSegments(int count) {
+        maxSegments = Math.max(2, count);
+    }
+
+    /**
+     * Set the listener receiving Updates dropped after a failure that was not transient,
+     * such as an error response. By default they are logged.
+     *
+     * @param listener failure listener
+     */
+    public void setFailureListener(UpdateDispatcher.FailureListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        failureListener = listener;
+    }
+
+    /**
+     * Append an Update to the journal to be sent in the background. Returns once the
+     * Update is in the page cache, without waiting for the disk.
+     *
+     * @param update Update to send
+     * @throws IOException the spool is closed or full, or the journal could not be written
+     */
+    public void append(Update update) throws IOException {
+        byte[] payload = FormUrlEncoder.UTF_8.encode(update.getParams());
+        if (HEADER_SIZE + payload.length > segmentSize) {
+            throw new IOException("Update of " + payload.length + " bytes does not fit in a spool segment of " + segmentSize + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("UpdateSpool is closed");
+            }
+            Segment active = segments.peekLast();
+            if (!active.fits(payload.length)) {
+                if (segments.size() >= maxSegments) {
+                    throw new IOException("Update spool is full: " + segments.size() + " segments of unsent Updates in " + directory);
+                }
+                active = createSegment();
+                segments.addLast(active);
+            }
+            active.append(payload, (int) crc.getValue());
+            pending.incrementAndGet();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Append an Update to the journal, reporting a failure to the failure listener
+     * instead of throwing.
+     *
+     * @param update Update to send
+     * @return true if the Update was appended
+     */
+    public boolean dispatch(Update update) {
+        try {
+            append(update);
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not spool RIS Update", e);
+            failed.increment();
+            notifyListener(update, new RisTransportException("Could not spool the RIS Update", e));
+            return false;
+        }
+    }
+
+    /**
+     * Flush appended Updates and sent marks to disk.
+     *
+     * @throws IOException failed to flush a segment
+     */
+    public void sync() throws IOException {
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        for (Segment segment : snapshot) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates in the journal that were not sent yet
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of segment files in use
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates sent and accepted by RIS
+     */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Updates dropped after a non-transient failure, or that could not be spooled
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Stop sending, flush the journal and unlock the directory. Unsent Updates stay in the
+     * directory and are sent by the next spool opened on it. The client is not closed.
+     *
+     * @throws IOException failed to flush the journal
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            sender.join(CLOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncTimer.shutdownNow();
+        try {
+            sync();
+        } finally {
+            // closing the channel releases the lock
+            lock.channel().close();
+        }
+    }
+
+    /**
+     * Lock the directory's lock file, failing at once if another spool holds it.
+     */
+    private static FileLock lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by a spool of this process
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("RIS Update spool directory " + directory + " is in use by another spool");
+        }
+        return lock;
+    }
+
+    private void sendLoop() {
+        long retryDelayMs = MIN_RETRY_DELAY_MS;
+        for (;;) {
+            Segment segment;
+            synchronized (this) {
+                try {
+                    for (;;) {
+                        if (closed) {
+                            return;
+                        }
+                        segment = segments.peekFirst();
+                        if (segment.hasUnread()) {
+                            break;
+                        }
+                        if (segment != segments.peekLast()) {
+                            // every Update of a segment no longer appended to was sent
+                            segments.pollFirst();
+                            segment.delete();
+                            continue;
+                        }
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            if (segment.isSent()) {
+                // sent before the restart
+                segment.skip();
+                continue;
+            }
+            Update update = segment.read();
+            try {
+                Response response = client.process(update);
+                if (response.getErrorCode() == null) {
+                    sent.increment();
+                } else {
+                    fail(update, new RisResponseException(response.getErrorCode()));
+                }
+            } catch (RisResponseException e) {
+                fail(update, e);
+            } catch (RisException e) {
+                if (isTransient(e)) {
+                    // RIS could not be reached or throttled: keep the order and try again later
+                    logger.warn("Could not send spooled RIS Update, retrying in {} ms: {}", retryDelayMs, e.getMessage());
+                    if (!pause(retryDelayMs)) {
+                        return;
+                    }
+                    retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                    continue;
+                }
+                // would fail the same way on every attempt, blocking the Updates behind it
+                fail(update, e);
+            } catch (RuntimeException e) {
+                fail(update, new RisTransportException("An error occurred while sending the spooled RIS Update", e));
+            }
+            retryDelayMs = MIN_RETRY_DELAY_MS;
+            segment.markSent();
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Whether sending the Update again later may succeed.
+     */
+    private static boolean isTransient(RisException error) {
+        if (error instanceof RisDeadlineExceededException) {
+            return true;
+        }
+        switch (TransportErrors.classify(error)) {
+            case CONNECT_FAILURE:
+            case POOL_EXHAUSTED:
+            case REJECTED:
+            case THROTTLED:
+            case READ_TIMEOUT:
+            case CONNECTION_LOST:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return false if the spool was closed meanwhile
+     */
+    private synchronized boolean pause(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        try {
+            long remaining;
+            while (!closed && (remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+        return !closed;
+    }
+
+    private void fail(Update update, RisException error) {
+        failed.increment();
+        notifyListener(update, error);
+    }
+
+    private void notifyListener(Update update, RisException error) {
+        try {
+            failureListener.onFailure(update, error);
+        } catch (RuntimeException e) {
+            logger.error("Update failure listener threw an exception", e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not flush the RIS Update spool", e);
+        }
+    }
+
+    /**
+     * Must hold the monitor, or be called from the constructor.
+     */
+    private Segment createSegment() throws IOException {
+        long sequence = nextSequence++;
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        return Segment.open(path, sequence, segmentSize);
+    }
+
+    /**
+     * Open the segment files of the directory and scan them in parallel.
+     *
+     * @return segments in order of their sequence
+     */
+    private List<Segment> recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        paths.sort(null);
+        if (paths.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<Segment>> scans = new ArrayList<>();
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                scans.add(executor.submit(() -> {
+                    Segment segment = Segment.open(path, sequence, 0);
+                    segment.scan();
+                    return segment;
+                }));
+            }
+            List<Segment> recovered = new ArrayList<>();
+            for (Future<Segment> scan : scans) {
+                recovered.add(scan.get());
+            }
+            return recovered;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recovering the RIS Update spool", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not recover the RIS Update spool in " + directory, e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * One memory-mapped journal file. Appends happen under the spool's monitor; reading
+     * and marking Updates sent happen on the sender thread only.
+     */
+    private static final class Segment {
+
+        final Path path;
+
+        final long sequence;
+
+        final MappedByteBuffer buffer;
+
+        /**
+         * End of the complete records. Written under the spool's monitor.
+         */
+        volatile int writePosition;
+
+        /**
+         * Start of the next record to send. Used by the sender thread only.
+         */
+        int readPosition;
+
+        int pendingAtRecovery;
+
+        private Segment(Path path, long sequence, MappedByteBuffer buffer) {
+            this.path = path;
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size size of a new file, 0 to open an existing one
+         */
+        static Segment open(Path path, long sequence, int size) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+                 FileChannel channel = file.getChannel()) {
+                if (size > 0) {
+                    file.setLength(size);
+                }
+                // the mapping stays valid after the channel is closed
+                return new Segment(path, sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+        }
+
+        /**
+         * Find the end of the complete records, a torn record left by a crash included,
+         * and the first unsent one.
+         */
+        void scan() {
+            int position = 0;
+            int firstPending = -1;
+            CRC32 crc = new CRC32();
+            while (position + HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position + LENGTH_OFFSET);
+                if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                crc.reset();
+                ByteBuffer payload = buffer.duplicate();
+                payload.limit(position + HEADER_SIZE + length).position(position + HEADER_SIZE);
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(position + CRC_OFFSET)) {
+                    break;
+                }
+                if (buffer.get(position + STATE_OFFSET) == PENDING) {
+                    pendingAtRecovery++;
+                    if (firstPending < 0) {
+                        firstPending = position;
+                    }
+                }
+                position += HEADER_SIZE + length;
+            }
+            writePosition = position;
+            readPosition = firstPending < 0 ? position : firstPending;
+        }
+
+        boolean isDone() {
+            return pendingAtRecovery == 0;
+        }
+
+        boolean fits(int length) {
+            return writePosition + HEADER_SIZE + length <= buffer.capacity();
+        }
+
+        void append(byte[] payload, int crc) {
+            int position = writePosition;
+            ByteBuffer target = buffer.duplicate();
+            target.position(position + HEADER_SIZE);
+            target.put(payload);
+            buffer.putInt(position + CRC_OFFSET, crc);
+            buffer.put(position + STATE_OFFSET, PENDING);
+            buffer.putInt(position + LENGTH_OFFSET, payload.length);
+            writePosition = position + HEADER_SIZE + payload.length;
+        }
+
+        boolean hasUnread() {
+            return readPosition < writePosition;
+        }
+
+        boolean isSent() {
+            return buffer.get(readPosition + STATE_OFFSET) == SENT;
+        }
+
+        Update read() {
+            int length = buffer.getInt(readPosition + LENGTH_OFFSET);
+            byte[] payload = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(readPosition + HEADER_SIZE);
+            source.get(payload);
+            return decode(new String(payload, StandardCharsets.US_ASCII));
+        }
+
+        void skip() {
+            readPosition += HEADER_SIZE + buffer.getInt(readPosition + LENGTH_OFFSET);
+        }
+
+        void markSent() {
+            buffer.put(readPosition + STATE_OFFSET, SENT);
+            skip();
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        /**
+         * Delete the file. The mapping is released when the buffer is garbage collected.
+         */
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Could not delete RIS Update spool segment {}", path, e);
+            }
+        }
+
+        private static Update decode(String encoded) {
+            Update update = new Update();
+            try {
+                for (String pair : encoded.split("&")) {
+                    int separator = pair.indexOf('=');
+                    if (separator > 0) {
+                        update.setParm(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                                URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            return update;
+        }
+    }
+}
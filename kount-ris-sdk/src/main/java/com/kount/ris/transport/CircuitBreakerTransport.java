@@ -0,0 +1,422 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.FallbackResponse;
+import com.kount.ris.Response;
+import com.kount.ris.util.RisCircuitOpenException;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that stops sending requests to RIS while it is failing or slow, so that
+ * checkout threads do not each wait out the full timeouts.
+ * </p>
+ * The breaker keeps the outcome of the last {@value #DEFAULT_WINDOW_SIZE} calls. Once
+ * at least {@value #DEFAULT_MINIMUM_CALLS} are recorded and the share of failed calls or
+ * of calls slower than the slow-call threshold reaches its limit, the breaker opens. While
+ * open, Inquiries are answered at once with a {@link FallbackResponse} carrying the
+ * configured AUTO decision, or fail with {@link RisCircuitOpenException} if no fallback
+ * decision is configured. Updates always fail fast so they can be resent later.
+ * </p>
+ * After the open duration the breaker turns half-open and lets a few probe requests
+ * through. It closes again if they stay within the limits and opens again otherwise.
+ * </p>
+ * Calls that say nothing about the health of RIS are not recorded: cancelled calls, calls
+ * aborted at the caller's deadline, calls refused by a local policy and calls throttled
+ * by RIS.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class CircuitBreakerTransport extends DelegatingTransport {
+
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    public static final long DEFAULT_SLOW_CALL_THRESHOLD_MS = 2000;
+    public static final long DEFAULT_OPEN_DURATION_MS = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+    /**
+     * Reason reported by fallback responses returned while the breaker is open.
+     */
+    public static final String FALLBACK_REASON = "CIRCUIT_OPEN";
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * State of the breaker.
+     */
+    public enum State {
+        /**
+         * Requests are sent and their outcome recorded.
+         */
+        CLOSED,
+        /**
+         * Requests are answered with the fallback without being sent.
+         */
+        OPEN,
+        /**
+         * A limited number of probe requests is sent to decide whether to close.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Callback notified when the breaker changes state, e.g. to raise an alert.
+     */
+    public interface StateListener {
+        /**
+         * Called after the breaker moved between states, outside of any lock.
+         *
+         * @param from previous state
+         * @param to   new state
+         */
+        void onStateChange(State from, State to);
+    }
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(CircuitBreakerTransport.class);
+
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+    private volatile long slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_THRESHOLD_MS);
+
+    private volatile long openDurationNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_DURATION_MS);
+
+    private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+    /**
+     * AUTO decision of fallback responses, null to throw while open.
+     */
+    private volatile String fallbackAuto;
+
+    // the fields below are guarded by this
+
+    private State state = State.CLOSED;
+
+    /**
+     * Incremented on every state change, so that calls started in an earlier state are
+     * not counted in the current one.
+     */
+    private long generation;
+
+    private final byte[] outcomes;
+
+    private int next;
+
+    private int recorded;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private long openedAt;
+
+    private int probesStarted;
+
+    /**
+     * Constructor that accepts the transport to protect, with a window of the last
+     * {@value #DEFAULT_WINDOW_SIZE} calls evaluated once {@value #DEFAULT_MINIMUM_CALLS}
+     * calls are recorded.
+     *
+     * @param delegate transport the requests are sent with
+     */
+    public CircuitBreakerTransport(Transport delegate) {
+        this(delegate, DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS);
+    }
+
+    /**
+     * Constructor that accepts the transport to protect and the size of the window.
+     *
+     * @param delegate     transport the requests are sent with
+     * @param windowSize   number of most recent calls whose outcome is evaluated
+     * @param minimumCalls calls that must be recorded before the breaker can open
+     */
+    public CircuitBreakerTransport(Transport delegate, int windowSize, int minimumCalls) {
+        super(delegate);
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), this.windowSize);
+        this.outcomes = new byte[this.windowSize];
+    }
+
+    /**
+     * Answer Inquiries with a fallback response carrying this AUTO decision while the
+     * breaker is open, instead of throwing {@link RisCircuitOpenException}.
+     *
+     * @param auto decision such as "R" (review), "A" or "D"; null to throw instead
+     */
+    public void setFallbackAuto(String auto) {
+        fallbackAuto = auto;
+    }
+
+    /**
+     * Set the percentage of failed calls at which the breaker opens.
+     *
+     * @param percent failure rate between 0 and 100
+     */
+    public void setFailureRateThreshold(double percent) {
+        failureRateThreshold = percent;
+    }
+
+    /**
+     * Set the percentage of slow calls at which the breaker opens.
+     *
+     * @param percent slow call rate between 0 and 100
+     */
+    public void setSlowCallRateThreshold(double percent) {
+        slowCallRateThreshold = percent;
+    }
+
+    /**
+     * Set the duration above which a call counts as slow.
+     *
+     * @param millis slow call threshold in milliseconds
+     */
+    public void setSlowCallThreshold(long millis) {
+        slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Set how long the breaker stays open before letting probe requests through.
+     *
+     * @param millis open duration in milliseconds
+     */
+    public void setOpenDuration(long millis) {
+        openDurationNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Set the number of probe requests let through while half-open.
+     *
+     * @param calls number of probe requests
+     */
+    public void setHalfOpenCalls(int calls) {
+        halfOpenCalls = Math.max(1, calls);
+    }
+
+    /**
+     * Register a callback notified on every state change.
+     *
+     * @param listener state change callback
+     */
+    public void addStateListener(StateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Getter
+     *
+     * @return current state of the breaker
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        return send(params, null);
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return send(params, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        return sendAsync(params, null);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        return sendAsync(params, Deadline.after(timeout));
+    }
+
+    private Response send(Map<String, String> params, Duration timeout) throws RisTransportException {
+        long permit = acquirePermission();
+        if (permit < 0) {
+            return rejected(params);
+        }
+        long start = System.nanoTime();
+        try {
+            Response response = timeout == null ? delegate.sendRequest(params) : delegate.sendRequest(params, timeout);
+            onComplete(permit, start, false);
+            return response;
+        } catch (RisTransportException | RuntimeException e) {
+            onFailure(permit, start, e);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Response> sendAsync(Map<String, String> params, Deadline deadline) {
+        long permit = acquirePermission();
+        if (permit < 0) {
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            try {
+                result.complete(rejected(params));
+            } catch (RisTransportException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Response> sent = sendDelegate(params, deadline);
+        sent.whenComplete((response, e) -> {
+            if (e == null) {
+                onComplete(permit, start, false);
+            } else {
+                onFailure(permit, start, e);
+            }
+        });
+        return sent;
+    }
+
+    private Response rejected(Map<String, String> params) throws RisTransportException {
+        String auto = fallbackAuto;
+        if (auto != null && RequestClass.of(params) == RequestClass.INQUIRY) {
+            return new FallbackResponse(params, auto, FALLBACK_REASON);
+        }
+        throw new RisCircuitOpenException("RIS circuit breaker is open, request not sent");
+    }
+
+    /**
+     * @return generation the call is counted in, or -1 if the call is not permitted
+     */
+    private long acquirePermission() {
+        boolean halfOpened = false;
+        long permit;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return -1;
+                }
+                transitionTo(State.HALF_OPEN);
+                halfOpened = true;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= halfOpenCalls) {
+                    return -1;
+                }
+                probesStarted++;
+            }
+            permit = generation;
+        }
+        if (halfOpened) {
+            notifyIfChanged(State.OPEN, State.HALF_OPEN);
+        }
+        return permit;
+    }
+
+    private void onFailure(long permit, long startNanos, Throwable error) {
+        if (isRecorded(error)) {
+            onComplete(permit, startNanos, true);
+            return;
+        }
+        synchronized (this) {
+            if (permit == generation && state == State.HALF_OPEN) {
+                // hand the probe to the next call
+                probesStarted--;
+            }
+        }
+    }
+
+    /**
+     * @return false for failures caused by the caller, a local policy or throttling
+     */
+    private static boolean isRecorded(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof CancellationException || t instanceof RisDeadlineExceededException) {
+                return false;
+            }
+        }
+        TransportErrors.Kind kind = TransportErrors.classify(error);
+        return kind != TransportErrors.Kind.REJECTED && kind != TransportErrors.Kind.THROTTLED;
+    }
+
+    private void onComplete(long permit, long startNanos, boolean failed) {
+        boolean slow = System.nanoTime() - startNanos >= slowCallThresholdNanos;
+        State from;
+        State to;
+        synchronized (this) {
+            if (permit != generation) {
+                // started before the last state change
+                return;
+            }
+            from = state;
+            int slot = next;
+            failures += (failed ? 1 : 0) - (outcomes[slot] & FAILED);
+            slowCalls += (slow ? 1 : 0) - ((outcomes[slot] & SLOW) >> 1);
+            outcomes[slot] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+            next = (slot + 1) % windowSize;
+            recorded = Math.min(recorded + 1, windowSize);
+
+            int required = state == State.HALF_OPEN ? Math.min(halfOpenCalls, windowSize) : minimumCalls;
+            if (recorded >= required) {
+                boolean overLimit = failures * 100.0 / recorded >= failureRateThreshold
+                        || slowCalls * 100.0 / recorded >= slowCallRateThreshold;
+                if (overLimit) {
+                    transitionTo(State.OPEN);
+                } else if (state == State.HALF_OPEN) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            to = state;
+        }
+        notifyIfChanged(from, to);
+    }
+
+    /**
+     * Move to a new state and start a new, empty window. Must hold the monitor.
+     */
+    private void transitionTo(State newState) {
+        logger.info("RIS circuit breaker {} -> {}", state, newState);
+        state = newState;
+        generation++;
+        Arrays.fill(outcomes, (byte) 0);
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+        probesStarted = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+    }
+
+    private void notifyIfChanged(State from, State to) {
+        if (from == to) {
+            return;
+        }
+        for (StateListener listener : listeners) {
+            try {
+                listener.onStateChange(from, to);
+            } catch (RuntimeException e) {
+                logger.warn("Circuit breaker state listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that limits the number of requests in flight to RIS and adapts the limit to
+ * the observed round-trip times.
+ * </p>
+ * The limit follows an additive-increase/multiplicative-decrease rule. A request that
+ * completes within the RTT tolerance (twice the lowest recently observed RTT by default)
+ * while at least half of the limit is in use raises the limit by 1/limit, about one per
+ * round trip. A slower request, a timeout or a connection failure lowers it by 10%, at
+ * most once per round trip.
+ * </p>
+ * Requests beyond the limit wait in a bounded FIFO queue. A request is rejected with
+ * {@link RisOverloadedException}, without reaching RIS, when the queue is full or no
+ * permit became free within the maximum queue wait. {@link #isOverloaded()} lets callers
+ * shed load before that happens.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class ConcurrencyLimitingTransport extends DelegatingTransport {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = HttpApiTransport.DEFAULT_MAX_CONNECTIONS;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 50;
+    public static final long DEFAULT_MAX_QUEUE_WAIT_MS = 1000;
+    public static final double DEFAULT_RTT_TOLERANCE = 2.0;
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * RTT samples after which the lowest RTT starts over, so the baseline follows lasting
+     * changes in RIS latency.
+     */
+    private static final int RTT_WINDOW = 1000;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(ConcurrencyLimitingTransport.class);
+
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+    private volatile long maxQueueWaitMs = DEFAULT_MAX_QUEUE_WAIT_MS;
+
+    private volatile double rttTolerance = DEFAULT_RTT_TOLERANCE;
+
+    // the fields below are guarded by this
+
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private double limit;
+
+    private int minLimit = DEFAULT_MIN_LIMIT;
+
+    private int maxLimit = DEFAULT_MAX_LIMIT;
+
+    private int inFlight;
+
+    private long lastDecreaseNanos = System.nanoTime();
+
+    private long windowMinRttNanos = Long.MAX_VALUE;
+
+    private long previousMinRttNanos = Long.MAX_VALUE;
+
+    private int windowSamples;
+
+    /**
+     * Constructor that accepts the transport to limit, starting at a limit of
+     * {@value #DEFAULT_INITIAL_LIMIT} requests in flight.
+     *
+     * @param delegate transport the requests are sent with
+     */
+    public ConcurrencyLimitingTransport(Transport delegate) {
+        this(delegate, DEFAULT_INITIAL_LIMIT);
+    }
+
+    /**
+     * Constructor that accepts the transport to limit and the initial limit.
+     *
+     * @param delegate     transport the requests are sent with
+     * @param initialLimit requests in flight permitted before any RTT is observed
+     */
+    public ConcurrencyLimitingTransport(Transport delegate, int initialLimit) {
+        super(delegate);
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    /**
+     * Set the range the limit adapts within. The maximum should not exceed the size of the
+     * connection pool of the wrapped transport.
+     *
+     * @param min lowest limit, at least 1
+     * @param max highest limit
+     */
+    public synchronized void setLimitBounds(int min, int max) {
+        minLimit = Math.max(1, min);
+        maxLimit = Math.max(minLimit, max);
+        limit = Math.min(Math.max(limit, minLimit), maxLimit);
+    }
+
+    /**
+     * Set how many requests may wait for a permit. Further requests are rejected at once.
+     *
+     * @param size queue size, 0 to reject every request beyond the limit
+     */
+    public void setMaxQueueSize(int size) {
+        maxQueueSize = Math.max(0, size);
+    }
+
+    /**
+     * Set how long a request may wait for a permit before it is rejected.
+     *
+     * @param millis maximum queue wait in milliseconds
+     */
+    public void setMaxQueueWait(long millis) {
+        maxQueueWaitMs = Math.max(0, millis);
+    }
+
+    /**
+     * Set how much slower than the lowest recently observed RTT a request may be before
+     * the limit is lowered.
+     *
+     * @param tolerance RTT ratio, e.g. 2.0 to lower the limit once RTTs double
+     */
+    public void setRttTolerance(double tolerance) {
+        rttTolerance = Math.max(1, tolerance);
+    }
+
+    /**
+     * Getter
+     *
+     * @return current number of requests permitted in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests waiting for a permit
+     */
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests rejected with RisOverloadedException
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Whether the limit is reached, so that a new request would have to queue or be
+     * rejected. Upstream services can use this to shed load early.
+     *
+     * @return true if no permit is free
+     */
+    public synchronized boolean isOverloaded() {
+        return inFlight >= (int) limit;
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        CompletableFuture<Void> permit = acquire();
+        try {
+            permit.get();
+        } catch (ExecutionException e) {
+            throw (RisTransportException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!abandon(permit)) {
+                // granted meanwhile, unless the queue wait ran out
+                permit.thenRun(() -> release(0, null, false));
+            }
+            throw new RisTransportException("Interrupted while waiting for a RIS request permit", e);
+        }
+
+        long start = System.nanoTime();
+        try {
+            Response response = delegate.sendRequest(params);
+            release(start, null, true);
+            return response;
+        } catch (RisTransportException | RuntimeException e) {
+            release(start, e, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Send the request within a time budget. Time spent waiting for a permit is taken
+     * from the budget, and the request leaves the queue when the budget is spent.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the request failed, was rejected or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return awaitResponse(sendRequestAsync(params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        return sendAsync(params, null);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        return sendAsync(params, Deadline.after(timeout));
+    }
+
+    private CompletableFuture<Response> sendAsync(Map<String, String> params, Deadline deadline) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        if (deadline != null) {
+            deadline.bound(result);
+            if (result.isDone()) {
+                return result;
+            }
+        }
+        CompletableFuture<Void> permit = acquire();
+        permit.whenComplete((v, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled or out of time while queued
+                release(0, null, false);
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<Response> attempt = sendDelegate(params, deadline);
+            result.whenComplete((response, e) -> attempt.cancel(true));
+            attempt.whenComplete((response, e) -> {
+                release(start, e, true);
+                if (e == null) {
+                    result.complete(response);
+                } else {
+                    result.completeExceptionally(TransportErrors.unwrap(e));
+                }
+            });
+        });
+        result.whenComplete((response, e) -> {
+            if (e != null) {
+                abandon(permit);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Take a permit if one is free, otherwise queue for one.
+     *
+     * @return future completed once the permit is granted, or exceptionally with
+     *         RisOverloadedException
+     */
+    private CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                permit.complete(null);
+                return permit;
+            }
+            if (waiters.size() < maxQueueSize) {
+                waiters.add(permit);
+            } else {
+                permit = null;
+            }
+        }
+        if (permit == null) {
+            return reject("RIS concurrency limit reached and the request queue is full");
+        }
+
+        CompletableFuture<Void> queued = permit;
+        ScheduledFuture<?> timeout = Scheduler.schedule(() -> {
+            if (abandon(queued)) {
+                rejected.increment();
+                queued.completeExceptionally(new RisOverloadedException(
+                        "No RIS request permit became free within " + maxQueueWaitMs + " ms"));
+            }
+        }, maxQueueWaitMs, TimeUnit.MILLISECONDS);
+        queued.whenComplete((v, e) -> timeout.cancel(false));
+        return queued;
+    }
+
+    private CompletableFuture<Void> reject(String message) {
+        rejected.increment();
+        logger.debug(message);
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        permit.completeExceptionally(new RisOverloadedException(message));
+        return permit;
+    }
+
+    /**
+     * Remove a permit request from the queue.
+     *
+     * @return true if it was still queued, false if the permit was already granted
+     */
+    private synchronized boolean abandon(CompletableFuture<Void> permit) {
+        return waiters.remove(permit);
+    }
+
+    /**
+     * Return a permit, adapt the limit to the outcome of the request and grant the freed
+     * permits to queued requests.
+     */
+    private void release(long startNanos, Throwable error, boolean sample) {
+        List<CompletableFuture<Void>> granted = null;
+        synchronized (this) {
+            inFlight--;
+            if (sample) {
+                adjustLimit(startNanos, error);
+            }
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                if (granted == null) {
+                    granted = new ArrayList<>();
+                }
+                inFlight++;
+                granted.add(waiters.poll());
+            }
+        }
+        if (granted != null) {
+            for (CompletableFuture<Void> permit : granted) {
+                permit.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Must hold the monitor.
+     */
+    private void adjustLimit(long startNanos, Throwable error) {
+        long now = System.nanoTime();
+        boolean congested;
+        if (error == null) {
+            long rtt = now - startNanos;
+            windowMinRttNanos = Math.min(windowMinRttNanos, rtt);
+            if (++windowSamples >= RTT_WINDOW) {
+                previousMinRttNanos = windowMinRttNanos;
+                windowMinRttNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            long baseline = Math.min(windowMinRttNanos, previousMinRttNanos);
+            congested = rtt > baseline * rttTolerance;
+        } else {
+            TransportErrors.Kind kind = TransportErrors.classify(error);
+            congested = kind == TransportErrors.Kind.READ_TIMEOUT
+                    || kind == TransportErrors.Kind.CONNECTION_LOST
+                    || kind == TransportErrors.Kind.CONNECT_FAILURE
+                    || kind == TransportErrors.Kind.POOL_EXHAUSTED;
+        }
+
+        if (congested) {
+            // requests sent before the last decrease saw the old limit, count them once
+            if (startNanos - lastDecreaseNanos > 0) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = now;
+                logger.debug("RIS concurrency limit lowered to {}", (int) limit);
+            }
+        } else if (error == null && inFlight + 1 >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
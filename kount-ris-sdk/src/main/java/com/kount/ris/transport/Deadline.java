@@ -0,0 +1,97 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.util.RisDeadlineExceededException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a request must be answered, measured on {@link System#nanoTime()}.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+final class Deadline {
+
+    /**
+     * Longest budget taken into account, keeps the deadline clear of nanoTime overflow.
+     */
+    private static final long MAX_BUDGET_NANOS = TimeUnit.DAYS.toNanos(365);
+
+    private final long budgetNanos;
+
+    private final long deadlineNanos;
+
+    private Deadline(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+        this.deadlineNanos = System.nanoTime() + budgetNanos;
+    }
+
+    /**
+     * @param timeout budget, starting now
+     * @return deadline at the end of the budget
+     */
+    static Deadline after(Duration timeout) {
+        if (timeout == null) {
+            throw new IllegalArgumentException("timeout must not be null");
+        }
+        long budget = timeout.compareTo(Duration.ofNanos(MAX_BUDGET_NANOS)) > 0 ? MAX_BUDGET_NANOS : timeout.toNanos();
+        return new Deadline(Math.max(0, budget));
+    }
+
+    boolean isExpired() {
+        return System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * @return point in time of the deadline on {@link System#nanoTime()}
+     */
+    long nanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @return budget left, zero once the deadline passed
+     */
+    Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Fail a future with {@link #exceeded(Throwable)} when the deadline is reached, unless
+     * it completed before.
+     *
+     * @param future future of the request
+     */
+    void bound(CompletableFuture<?> future) {
+        if (isExpired()) {
+            future.completeExceptionally(exceeded(null));
+            return;
+        }
+        ScheduledFuture<?> expiry = schedule(() -> future.completeExceptionally(exceeded(null)));
+        future.whenComplete((result, e) -> expiry.cancel(false));
+    }
+
+    /**
+     * Run a task when the deadline is reached, on a timer shared by all transports. The
+     * task must be short, such as aborting a request.
+     *
+     * @param task task to run
+     * @return handle to cancel the task with once the request completed
+     */
+    ScheduledFuture<?> schedule(Runnable task) {
+        return Scheduler.schedule(task, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param cause failure the request ran into when the budget ran out, may be null
+     * @return exception reporting the spent budget
+     */
+    RisDeadlineExceededException exceeded(Throwable cause) {
+        String message = "No RIS response within the deadline of " + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + " ms";
+        return cause == null ? new RisDeadlineExceededException(message) : new RisDeadlineExceededException(message, cause);
+    }
+}
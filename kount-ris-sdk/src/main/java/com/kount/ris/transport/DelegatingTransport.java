@@ -0,0 +1,135 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Base class of transports that add a policy (hedging, retries, ...) around another
+ * transport. By default every call is forwarded to the wrapped transport, so policies
+ * can be stacked in any order.
+ * </p>
+ * Requests with a time budget are forwarded through
+ * {@link #sendRequest(Map, Duration)} and {@link #sendRequestAsync(Map, Duration)}, so
+ * the budget reaches the transport that does the I/O. A subclass that applies its policy
+ * in {@link #sendRequest(Map)} and {@link #sendRequestAsync(Map)} must override these
+ * as well, passing on what is left of the budget, or the policy is skipped for such
+ * requests.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public abstract class DelegatingTransport extends Transport {
+
+    /**
+     * Transport the requests are forwarded to.
+     */
+    protected final Transport delegate;
+
+    /**
+     * Constructor that accepts the transport to wrap.
+     *
+     * @param delegate transport the requests are forwarded to
+     */
+    protected DelegatingTransport(Transport delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate transport must not be null");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Getter
+     *
+     * @return wrapped transport
+     */
+    public Transport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Find a transport of the given type in a chain of delegating transports.
+     *
+     * @param transport outermost transport of the chain
+     * @param type      type of transport to look for
+     * @param <T>       transport type
+     * @return first transport of the given type, or null if there is none
+     */
+    public static <T extends Transport> T unwrap(Transport transport, Class<T> type) {
+        Transport current = transport;
+        while (current != null) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            current = current instanceof DelegatingTransport ? ((DelegatingTransport) current).delegate : null;
+        }
+        return null;
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        return delegate.sendRequest(params);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        return delegate.sendRequestAsync(params);
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return delegate.sendRequest(params, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        return delegate.sendRequestAsync(params, timeout);
+    }
+
+    @Override
+    public void setRisServerUrl(String url) {
+        delegate.setRisServerUrl(url);
+    }
+
+    @Override
+    public void setConnectTimeout(int timeout) {
+        delegate.setConnectTimeout(timeout);
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+        delegate.setReadTimeout(timeout);
+    }
+
+    /**
+     * Send a request with the wrapped transport, with the budget left until the deadline
+     * if there is one. A RuntimeException thrown by the wrapped transport fails the
+     * returned future.
+     *
+     * @param params   parameters to send
+     * @param deadline deadline of the request, null for none
+     * @return future of the wrapped transport
+     */
+    CompletableFuture<Response> sendDelegate(Map<String, String> params, Deadline deadline) {
+        try {
+            return deadline == null ? delegate.sendRequestAsync(params) : delegate.sendRequestAsync(params, deadline.remaining());
+        } catch (RuntimeException e) {
+            CompletableFuture<Response> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Closes the wrapped transport.
+     */
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.kount.ris.transport;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Form post entity that encodes the RIS request parameters directly onto the connection
+ * output stream with {@link FormUrlEncoder}.
+ * </p>
+ * The content length is computed up front so the request is sent with a Content-Length
+ * header rather than chunked. The parameters must not change while the request is sent.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+class FormUrlEncodedEntity extends AbstractHttpEntity {
+
+    private final Map<String, String> params;
+
+    private final FormUrlEncoder encoder;
+
+    private final long contentLength;
+
+    FormUrlEncodedEntity(Map<String, String> params, FormUrlEncoder encoder) {
+        super(ContentType.APPLICATION_FORM_URLENCODED.withCharset(encoder.getCharset()), null);
+        this.params = params;
+        this.encoder = encoder;
+        this.contentLength = encoder.encodedLength(params);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new ByteArrayInputStream(encoder.encode(params));
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        encoder.writeTo(params, outStream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
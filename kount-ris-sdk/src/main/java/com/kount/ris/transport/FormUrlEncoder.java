@@ -0,0 +1,258 @@
+package com.kount.ris.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Encodes RIS request parameters as an <code>application/x-www-form-urlencoded</code> body.
+ * </p>
+ * Pairs are percent-encoded straight into the destination stream or byte array, without
+ * building name/value pair lists or intermediate strings. Characters are encoded the same
+ * way as {@link org.apache.hc.core5.net.WWWFormCodec}: ASCII letters, digits and
+ * <code>-._~</code> are written as is, space becomes '+', everything else is
+ * percent-encoded in the encoder's charset. Parameters with a null value are
+ * written as the bare key.
+ * </p>
+ * Only UTF-8 and ISO-8859-1 are supported so the encoded length can be computed without
+ * encoding the body twice. Characters that ISO-8859-1 cannot represent are sent as '?',
+ * as the JDK charset encoder would.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public final class FormUrlEncoder {
+
+    /**
+     * Encoder producing UTF-8 percent-encoded bodies.
+     */
+    public static final FormUrlEncoder UTF_8 = new FormUrlEncoder(StandardCharsets.UTF_8);
+
+    /**
+     * Encoder producing ISO-8859-1 percent-encoded bodies, the default charset of form posts.
+     */
+    public static final FormUrlEncoder ISO_8859_1 = new FormUrlEncoder(StandardCharsets.ISO_8859_1);
+
+    /**
+     * Size of the per-thread scratch buffer used when writing to a stream.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Longest encoding of a single char: "%XX" for each of up to three UTF-8 bytes. Surrogate
+     * pairs (four bytes) make room again halfway through.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 9;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * ASCII characters written without encoding.
+     */
+    private static final boolean[] SAFE = new boolean[128];
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            SAFE[c] = true;
+        }
+        SAFE['-'] = true;
+        SAFE['_'] = true;
+        SAFE['.'] = true;
+        SAFE['~'] = true;
+    }
+
+    private final Charset charset;
+
+    private final boolean utf8;
+
+    private FormUrlEncoder(Charset charset) {
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+    }
+
+    /**
+     * Encoder matching the transport charset setting.
+     *
+     * @param forceUtf8 true for UTF-8, false for ISO-8859-1
+     * @return FormUrlEncoder
+     */
+    public static FormUrlEncoder of(boolean forceUtf8) {
+        return forceUtf8 ? UTF_8 : ISO_8859_1;
+    }
+
+    /**
+     * @return charset the parameter values are encoded in before percent-encoding
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Number of bytes {@link #writeTo(Map, OutputStream)} will write for the given parameters.
+     *
+     * @param params parameters to encode
+     * @return encoded length in bytes
+     */
+    public long encodedLength(Map<String, String> params) {
+        long length = params.isEmpty() ? 0 : params.size() - 1;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            length += encodedLength(entry.getKey());
+            if (entry.getValue() != null) {
+                length += 1 + encodedLength(entry.getValue());
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encode the parameters into a new array of exactly the encoded length.
+     *
+     * @param params parameters to encode
+     * @return encoded body
+     */
+    public byte[] encode(Map<String, String> params) {
+        long length = encodedLength(params);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Encoded parameters exceed the maximum array size");
+        }
+        byte[] body = new byte[(int) length];
+        try {
+            write(params, null, body);
+        } catch (IOException e) {
+            // nothing is written to a stream
+            throw new IllegalStateException(e);
+        }
+        return body;
+    }
+
+    /**
+     * Encode the parameters directly to a stream. The stream is neither flushed nor closed.
+     *
+     * @param params parameters to encode
+     * @param out stream to write to
+     * @throws IOException failed to write to the stream
+     */
+    public void writeTo(Map<String, String> params, OutputStream out) throws IOException {
+        write(params, out, SCRATCH.get());
+    }
+
+    /**
+     * Encode the parameters into buf, draining it to out whenever it fills up. With a null
+     * stream buf must be large enough for the whole body.
+     */
+    private void write(Map<String, String> params, OutputStream out, byte[] buf) throws IOException {
+        int pos = 0;
+        boolean first = true;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (!first) {
+                pos = ensureCapacity(out, buf, pos);
+                buf[pos++] = '&';
+            }
+            first = false;
+            pos = write(entry.getKey(), out, buf, pos);
+            if (entry.getValue() != null) {
+                pos = ensureCapacity(out, buf, pos);
+                buf[pos++] = '=';
+                pos = write(entry.getValue(), out, buf, pos);
+            }
+        }
+        if (out != null && pos > 0) {
+            out.write(buf, 0, pos);
+        }
+    }
+
+    private int write(String s, OutputStream out, byte[] buf, int pos) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            pos = ensureCapacity(out, buf, pos);
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (SAFE[c]) {
+                    buf[pos++] = (byte) c;
+                } else if (c == ' ') {
+                    buf[pos++] = '+';
+                } else {
+                    pos = percent(c, buf, pos);
+                }
+            } else if (!utf8) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++;
+                }
+                pos = percent(c <= 0xFF ? c : '?', buf, pos);
+            } else if (c < 0x800) {
+                pos = percent(0xC0 | (c >> 6), buf, pos);
+                pos = percent(0x80 | (c & 0x3F), buf, pos);
+            } else if (!Character.isSurrogate(c)) {
+                pos = percent(0xE0 | (c >> 12), buf, pos);
+                pos = percent(0x80 | ((c >> 6) & 0x3F), buf, pos);
+                pos = percent(0x80 | (c & 0x3F), buf, pos);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                pos = percent(0xF0 | (cp >> 18), buf, pos);
+                pos = percent(0x80 | ((cp >> 12) & 0x3F), buf, pos);
+                pos = ensureCapacity(out, buf, pos);
+                pos = percent(0x80 | ((cp >> 6) & 0x3F), buf, pos);
+                pos = percent(0x80 | (cp & 0x3F), buf, pos);
+            } else {
+                // unpaired surrogate
+                pos = percent('?', buf, pos);
+            }
+        }
+        return pos;
+    }
+
+    private long encodedLength(String s) {
+        long length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += SAFE[c] || c == ' ' ? 1 : 3;
+            } else if (!utf8) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++;
+                }
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (!Character.isSurrogate(c)) {
+                length += 9;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                i++;
+                length += 12;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int ensureCapacity(OutputStream out, byte[] buf, int pos) throws IOException {
+        if (out != null && pos > buf.length - MAX_BYTES_PER_CHAR) {
+            out.write(buf, 0, pos);
+            return 0;
+        }
+        return pos;
+    }
+
+    private static int percent(int b, byte[] buf, int pos) {
+        buf[pos++] = '%';
+        buf[pos++] = HEX[(b >> 4) & 0x0F];
+        buf[pos++] = HEX[b & 0x0F];
+        return pos;
+    }
+}
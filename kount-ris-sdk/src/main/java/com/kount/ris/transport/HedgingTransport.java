@@ -0,0 +1,378 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that hedges Inquiry requests: when the response has not arrived after a short
+ * delay, a duplicate request is sent and the first successful response wins. The slower
+ * request is cancelled. Updates are passed through unchanged.
+ * </p>
+ * The delay is either fixed or derived from a percentile (p95 by default) of the recently
+ * observed Inquiry latency. Hedges are paid for from a budget that grows by a configured
+ * fraction of a request for every Inquiry, so hedging adds at most that fraction of extra
+ * load and never more than doubles it.
+ * </p>
+ * The wrapped transport should send without blocking in {@link #sendRequestAsync(Map)},
+ * as {@link HttpApiTransport} does; otherwise the first attempt completes before a hedge
+ * can be sent.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class HedgingTransport extends DelegatingTransport {
+
+    public static final long DEFAULT_INITIAL_HEDGE_DELAY_MS = 100;
+    public static final long DEFAULT_MIN_HEDGE_DELAY_MS = 10;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+    public static final double DEFAULT_HEDGE_BUDGET_RATIO = 0.1;
+
+    /**
+     * Latency samples needed before the percentile based delay is trusted.
+     */
+    private static final int MIN_LATENCY_SAMPLES = 100;
+
+    /**
+     * Latency samples after which the histogram starts over, so the delay follows
+     * changes in RIS latency.
+     */
+    private static final int LATENCY_WINDOW = 10000;
+
+    /**
+     * Most hedges that can be saved up during quiet periods and spent in a burst.
+     */
+    private static final int MAX_BUDGET = 10;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(HedgingTransport.class);
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private final TokenBudget budget = new TokenBudget(DEFAULT_HEDGE_BUDGET_RATIO, MAX_BUDGET);
+
+    private final LongAdder hedgesSent = new LongAdder();
+
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * Fixed hedge delay in milliseconds, or -1 to derive it from the observed latency.
+     */
+    private volatile long hedgeDelayMs = -1;
+
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    private volatile long minHedgeDelayMs = DEFAULT_MIN_HEDGE_DELAY_MS;
+
+    /**
+     * Delay derived from the previous latency window, used until the current one has
+     * enough samples.
+     */
+    private volatile long previousWindowDelayMs = DEFAULT_INITIAL_HEDGE_DELAY_MS;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor that accepts the transport to hedge requests on. Hedges after the
+     * observed p95 latency with a budget of 10% extra requests.
+     *
+     * @param delegate transport the requests are sent with
+     */
+    public HedgingTransport(Transport delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Send the hedge after a fixed delay instead of one derived from the observed latency.
+     *
+     * @param delayMs delay in milliseconds after which a duplicate Inquiry is sent
+     */
+    public void setHedgeDelay(long delayMs) {
+        hedgeDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Send the hedge once the request took longer than the given percentile of recently
+     * observed Inquiry latencies. Until enough latencies are observed the initial delay of
+     * {@value #DEFAULT_INITIAL_HEDGE_DELAY_MS} ms is used.
+     *
+     * @param percentile latency percentile between 0 and 100, e.g. 95
+     */
+    public void setHedgePercentile(double percentile) {
+        hedgePercentile = Math.min(Math.max(percentile, 0), 100);
+        hedgeDelayMs = -1;
+    }
+
+    /**
+     * Set the lower bound of the percentile based delay, so that a very fast RIS does not
+     * lead to hedging nearly every request.
+     *
+     * @param delayMs minimum delay in milliseconds
+     */
+    public void setMinHedgeDelay(long delayMs) {
+        minHedgeDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Set how many hedges may be sent per Inquiry on average. A ratio of 0.1 allows at
+     * most 10% extra requests; the ratio is capped at 1, doubling the load at most.
+     *
+     * @param ratio hedges per request, between 0 and 1
+     */
+    public void setHedgeBudgetRatio(double ratio) {
+        budget.setRatio(Math.min(ratio, 1));
+    }
+
+    /**
+     * Getter
+     *
+     * @return delay in milliseconds after which the next Inquiry will be hedged
+     */
+    public long getHedgeDelay() {
+        long fixed = hedgeDelayMs;
+        if (fixed >= 0) {
+            return fixed;
+        }
+        if (latencies.getCount() < MIN_LATENCY_SAMPLES) {
+            return previousWindowDelayMs;
+        }
+        return Math.max(minHedgeDelayMs, latencies.getValueAtPercentileMillis(hedgePercentile));
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of hedge requests sent
+     */
+    public long getHedgeCount() {
+        return hedgesSent.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests answered by the hedge rather than the first attempt
+     */
+    public long getHedgeWinCount() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return latencies of successful Inquiries, including any hedge delay
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        if (RequestClass.of(params) != RequestClass.INQUIRY) {
+            return delegate.sendRequest(params);
+        }
+        return awaitResponse(sendRequestAsync(params));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        if (RequestClass.of(params) != RequestClass.INQUIRY) {
+            return delegate.sendRequestAsync(params);
+        }
+        return new HedgedCall(params, null).start();
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        if (RequestClass.of(params) != RequestClass.INQUIRY) {
+            return delegate.sendRequest(params, timeout);
+        }
+        return awaitResponse(sendRequestAsync(params, timeout));
+    }
+
+    /**
+     * Hedge the Inquiry within a time budget. Both attempts are sent with what is left of
+     * the budget, and no hedge is sent once it is spent.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return future completed with the first successful response
+     */
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        if (RequestClass.of(params) != RequestClass.INQUIRY) {
+            return delegate.sendRequestAsync(params, timeout);
+        }
+        return new HedgedCall(params, Deadline.after(timeout)).start();
+    }
+
+    /**
+     * Stops sending hedges and closes the wrapped transport.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+
+    private void recordLatency(long startNanos) {
+        latencies.recordSince(startNanos);
+        if (latencies.getCount() >= LATENCY_WINDOW) {
+            previousWindowDelayMs = Math.max(minHedgeDelayMs, latencies.getValueAtPercentileMillis(hedgePercentile));
+            latencies.reset();
+        }
+    }
+
+    /**
+     * One Inquiry with its first attempt and possibly a hedge.
+     */
+    private final class HedgedCall {
+
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        private final Map<String, String> params;
+
+        /**
+         * Copy for the hedge, taken before the first attempt can modify the parameters.
+         */
+        private final Map<String, String> hedgeParams;
+
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * Deadline of the caller, null for none.
+         */
+        private final Deadline deadline;
+
+        private volatile CompletableFuture<Response> primary;
+
+        private volatile CompletableFuture<Response> hedge;
+
+        private volatile ScheduledFuture<?> hedgeTimer;
+
+        /**
+         * Attempts sent and not completed yet. Guarded by this.
+         */
+        private int inFlight = 1;
+
+        /**
+         * Hedge timer scheduled and neither fired nor cancelled. Guarded by this.
+         */
+        private boolean hedgeScheduled = false;
+
+        HedgedCall(Map<String, String> params, Deadline deadline) {
+            this.params = params;
+            this.hedgeParams = new LinkedHashMap<>(params);
+            this.deadline = deadline;
+        }
+
+        CompletableFuture<Response> start() {
+            if (deadline != null) {
+                deadline.bound(result);
+                if (result.isDone()) {
+                    return result;
+                }
+            }
+            budget.deposit();
+            primary = send(params, true);
+            // registered before any return, the deadline may have fired while sending
+            result.whenComplete((response, e) -> {
+                ScheduledFuture<?> scheduled = hedgeTimer;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                // cancel whichever attempt lost
+                primary.cancel(true);
+                CompletableFuture<Response> sent = hedge;
+                if (sent != null) {
+                    sent.cancel(true);
+                }
+            });
+            long delay = getHedgeDelay();
+            synchronized (this) {
+                if (result.isDone() || inFlight == 0) {
+                    return result;
+                }
+                hedgeScheduled = true;
+            }
+            hedgeTimer = Scheduler.dispatch(this::sendHedge, this::skipHedge, delay, TimeUnit.MILLISECONDS);
+            if (result.isDone()) {
+                hedgeTimer.cancel(false);
+            }
+            return result;
+        }
+
+        private void sendHedge() {
+            synchronized (this) {
+                if (!hedgeScheduled || result.isDone() || closed) {
+                    return;
+                }
+                hedgeScheduled = false;
+                if (!budget.tryWithdraw()) {
+                    logger.debug("Hedge budget exhausted, not hedging");
+                    return;
+                }
+                inFlight++;
+            }
+            hedgesSent.increment();
+            hedge = send(hedgeParams, false);
+            if (result.isDone()) {
+                hedge.cancel(true);
+            }
+        }
+
+        /**
+         * Give up the hedge when every worker is busy; the first attempt is still in flight.
+         */
+        private synchronized void skipHedge() {
+            if (hedgeScheduled) {
+                hedgeScheduled = false;
+                logger.debug("Transport workers busy, not hedging");
+            }
+        }
+
+        private CompletableFuture<Response> send(Map<String, String> attemptParams, boolean first) {
+            CompletableFuture<Response> attempt = sendDelegate(attemptParams, deadline);
+            attempt.whenComplete((response, e) -> completed(response, e, first));
+            return attempt;
+        }
+
+        private void completed(Response response, Throwable e, boolean first) {
+            if (e == null) {
+                if (result.complete(response)) {
+                    recordLatency(startNanos);
+                    if (!first) {
+                        hedgesWon.increment();
+                    }
+                }
+                return;
+            }
+
+            boolean failed;
+            synchronized (this) {
+                inFlight--;
+                if (first) {
+                    // the first attempt failed outright, leave retrying to a retry policy
+                    hedgeScheduled = false;
+                }
+                failed = inFlight == 0 && !hedgeScheduled;
+            }
+            if (failed) {
+                result.completeExceptionally(TransportErrors.unwrap(e));
+            }
+        }
+    }
+}
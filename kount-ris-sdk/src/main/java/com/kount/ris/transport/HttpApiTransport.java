@@ -2,21 +2,52 @@ package com.kount.ris.transport;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisPoolExhaustedException;
 import com.kount.ris.util.RisResponseException;
+import com.kount.ris.util.RisThrottledException;
 import com.kount.ris.util.RisTransportException;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.AsyncExecRuntime;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.config.ConnectionConfig;
-import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
 import org.apache.hc.core5.http.io.SocketConfig;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.DeadlineTimeoutException;
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 import org.apache.logging.log4j.LogManager;
@@ -24,14 +55,27 @@ import org.apache.logging.log4j.Logger;
 
 import javax.naming.ConfigurationException;
 import java.io.*;
+import java.net.URI;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 
@@ -53,56 +97,154 @@ public class HttpApiTransport extends Transport {
     public static final int DEFAULT_SOCKET_TIMEOUT_MS = 10000;
     public static final String CUSTOM_HEADER_MERCHANT_ID = "X-Kount-Merc-Id";
     public static final String CUSTOM_HEADER_API_KEY = "X-Kount-Api-Key";
-    protected static final Lock connManagerWriteLock = new ReentrantLock();
     protected boolean migrationModeEnabled = false;
     protected String paymentsFraudApiEndpoint = "https://api.kount.com/commerce/ris";
     protected String paymentsFraudAuthEndpoint = "https://login.kount.com/oauth2/ausdppksgrbyM0abp357/v1/token";
     protected String paymentsFraudClientId = "";
     protected String paymentsFraudApiKey = "";
-    protected BearerAuthResponse bearer = new BearerAuthResponse();
-    protected static final ReentrantReadWriteLock bearerRWLock = new ReentrantReadWriteLock();
-    protected static final Lock bearerReadLock = bearerRWLock.readLock();
-    protected static final Lock bearerWriteLock = bearerRWLock.writeLock();
+    protected volatile BearerAuthResponse bearer = new BearerAuthResponse();
     public static final String PF_AUTH_HEADER = "Authorization";
     private boolean forceUtf8 = false;
 
     /**
-     * Logger.
+     * How long before request threads would refresh the bearer token themselves the
+     * background refresher renews it.
      */
-    private static final Logger logger = LogManager.getLogger(HttpApiTransport.class);
+    private static final int TOKEN_REFRESH_LEAD_SECONDS = 60;
+
+    /**
+     * Upper bound of the random delay subtracted from each scheduled token refresh.
+     */
+    private static final int TOKEN_REFRESH_JITTER_SECONDS = 30;
 
-    private static final PoolingHttpClientConnectionManager connManager = PoolingHttpClientConnectionManagerBuilder.create()
-            .setDefaultSocketConfig(SocketConfig.custom()
-                    .setSoTimeout(Timeout.ofMinutes(1))
-                    .build())
-            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
-            .setConnPoolPolicy(PoolReusePolicy.FIFO)
-            .setDefaultConnectionConfig(ConnectionConfig.custom()
-                    .setSocketTimeout(Timeout.ofMilliseconds(DEFAULT_SOCKET_TIMEOUT_MS))
-                    .setConnectTimeout(Timeout.ofMilliseconds(DEFAULT_CONNECTION_TIMEOUT_MS))
-                    .setTimeToLive(TimeValue.ofMinutes(DEFAULT_CONNECTION_IDLE_TIMEOUT_MINUTES))
-                    .build())
-            .build();
+    private static final long TOKEN_REFRESH_MIN_DELAY_MS = 5000;
+    private static final long TOKEN_REFRESH_MIN_RETRY_MS = 1000;
+    private static final long TOKEN_REFRESH_MAX_RETRY_MS = 60000;
+    private static final int AUTH_MAX_CONNECTIONS = 2;
 
-    static {
-        connManagerWriteLock.lock();
-        connManager.setMaxTotal(DEFAULT_MAX_CONNECTIONS);
-        connManager.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS);
-        connManagerWriteLock.unlock();
-    }
+    /**
+     * How often the keep-warm task tops up the pool, well within the connection time to live.
+     */
+    private static final long KEEP_WARM_INTERVAL_SECONDS = 15;
+
+    /**
+     * Context attribute holding the execution runtime of a non-blocking exchange.
+     */
+    private static final String EXEC_RUNTIME_ATTRIBUTE = "kount.ris.exec-runtime";
+
+    /**
+     * Shared, thread safe mapper for auth token responses.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Current bearer token as sent on requests. Replaced as a whole on refresh, so the
+     * request path reads it without locking.
+     */
+    private volatile AuthToken authToken = AuthToken.of(bearer);
+
+    /**
+     * Serializes token requests so that only one is in flight per transport.
+     */
+    private final ReentrantLock tokenRefreshLock = new ReentrantLock();
+
+    /**
+     * When set, the bearer token is renewed ahead of expiry on a background thread.
+     */
+    private volatile boolean backgroundTokenRefreshEnabled = true;
+
+    /**
+     * Shortest delay of a scheduled token refresh, package-private for tests.
+     */
+    volatile long tokenRefreshMinDelayMs = TOKEN_REFRESH_MIN_DELAY_MS;
+
+    /**
+     * Delay of the first retry of a failed background refresh, package-private for tests.
+     */
+    volatile long tokenRefreshMinRetryMs = TOKEN_REFRESH_MIN_RETRY_MS;
+
+    private long tokenRefreshRetryDelayMs = TOKEN_REFRESH_MIN_RETRY_MS;
+
+    private ScheduledFuture<?> tokenRefreshTask;
+
+    private ScheduledFuture<?> keepWarmTask;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile CloseableHttpClient authHttpClient;
+
+    private boolean closed = false;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(HttpApiTransport.class);
 
     /**
      * Cache the api key (minimize file reads to once per instantiation).
      */
     protected String apiKey;
 
-    private CloseableHttpClient httpClient;
+    /**
+     * Connection pool used by the blocking client. Each transport owns its pool unless
+     * one is shared deliberately through {@link #setConnectionManager}.
+     */
+    private PoolingHttpClientConnectionManager connManager;
+
+    /**
+     * True when {@link #connManager} was handed in and is owned by someone else.
+     */
+    private boolean connManagerShared = false;
+
+    private volatile CloseableHttpClient httpClient;
+
+    /**
+     * Non-blocking client used by {@link #sendRequestAsync(Map)}, created on first use.
+     */
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
+
+    /**
+     * Connection pool of the non-blocking client, created together with it.
+     */
+    private volatile PoolingAsyncClientConnectionManager asyncConnManager;
+
+    /**
+     * Number of I/O reactor threads used by the non-blocking client.
+     */
+    private int ioThreadCount = IOReactorConfig.DEFAULT.getIoThreadCount();
+
+    /**
+     * When set, requests are sent over HTTP/2 (negotiated with ALPN) and multiplexed
+     * over the connections of the non-blocking client.
+     */
+    private volatile boolean http2Enabled = false;
 
     /**
      * Connection Time To Live
      */
     private int connectionTimeToLive;
 
+    /**
+     * Per-request configuration carrying the connection request (lease) timeout, null
+     * to use the client defaults.
+     */
+    private volatile RequestConfig requestConfig;
+
+    /**
+     * Time blocking requests waited for a pooled connection.
+     */
+    private final LatencyHistogram leaseWaitTimes = new LatencyHistogram();
+
+    /**
+     * Number of blocking requests that gave up waiting for a pooled connection.
+     */
+    private final LongAdder leaseTimeouts = new LongAdder();
+
+    /**
+     * Number of requests aborted in flight.
+     */
+    private final LongAdder aborted = new LongAdder();
+
     /**
      * Default transport constructor.
      */
@@ -110,6 +252,16 @@ public class HttpApiTransport extends Transport {
         connectTimeout = DEFAULT_CONNECTION_TIMEOUT_MS;
         readTimeout = DEFAULT_SOCKET_TIMEOUT_MS;
         connectionTimeToLive = DEFAULT_CONNECTION_IDLE_TIMEOUT_MINUTES;
+        connManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(Timeout.ofMinutes(1))
+                        .build())
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.FIFO)
+                .setDefaultConnectionConfig(connectionConfig())
+                .setMaxConnTotal(DEFAULT_MAX_CONNECTIONS)
+                .setMaxConnPerRoute(DEFAULT_MAX_CONNECTIONS)
+                .build();
     }
 
     /**
@@ -150,10 +302,8 @@ public class HttpApiTransport extends Transport {
         this.risServerUrl = url.toString();
         this.apiKey = key;
 
-        connManagerWriteLock.lock();
         connManager.setMaxTotal(maxConnections);
         connManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
-        connManagerWriteLock.unlock();
     }
 
     /**
@@ -196,6 +346,26 @@ public class HttpApiTransport extends Transport {
     public void setCustomBearerResponse(BearerAuthResponse customBearer) {
         logger.warn("Setting custom bearer response. This is not recommended.");
         this.bearer = customBearer;
+        this.authToken = AuthToken.of(customBearer);
+    }
+
+    /**
+     * Enable or disable renewing the Payments Fraud bearer token ahead of expiry on a
+     * background thread. Enabled by default; when disabled the token is refreshed on the
+     * request thread that finds it about to expire.
+     *
+     * @param enabled true to refresh the token in the background
+     */
+    public void setBackgroundTokenRefreshEnabled(boolean enabled) {
+        backgroundTokenRefreshEnabled = enabled;
+        if (!enabled) {
+            synchronized (this) {
+                if (tokenRefreshTask != null) {
+                    tokenRefreshTask.cancel(false);
+                    tokenRefreshTask = null;
+                }
+            }
+        }
     }
 
     /**
@@ -215,19 +385,385 @@ public class HttpApiTransport extends Transport {
      */
     public void setConnectionTimeToLive(int minutes) {
         connectionTimeToLive = minutes;
+        updateConnectionConfig();
+    }
+
+    /**
+     * Set the connection timeout. Applies to connections opened from now on, by both the
+     * blocking and the non-blocking client, unless the blocking pool is shared.
+     *
+     * @param timeout Timeout in milliseconds, zero for an infinite timeout
+     */
+    @Override
+    public void setConnectTimeout(int timeout) {
+        super.setConnectTimeout(timeout);
+        updateConnectionConfig();
+    }
+
+    /**
+     * Set the read (socket) timeout. Applies to connections opened from now on, by both
+     * the blocking and the non-blocking client, unless the blocking pool is shared.
+     *
+     * @param timeout Timeout in milliseconds, zero for an infinite timeout
+     */
+    @Override
+    public void setReadTimeout(int timeout) {
+        super.setReadTimeout(timeout);
+        updateConnectionConfig();
+    }
+
+    private void updateConnectionConfig() {
+        ConnectionConfig config = connectionConfig();
+        if (!connManagerShared) {
+            connManager.setDefaultConnectionConfig(config);
+        }
+        PoolingAsyncClientConnectionManager manager = asyncConnManager;
+        if (manager != null) {
+            manager.setDefaultConnectionConfig(config);
+        }
+    }
+
+    /**
+     * Set how long a request may wait for a free connection when all pooled connections
+     * are in use. A request that times out fails with a {@link RisPoolExhaustedException}
+     * without having been sent. A timeout of zero is interpreted as an infinite timeout.
+     *
+     * @param timeout Timeout in milliseconds
+     */
+    public void setConnectionRequestTimeout(int timeout) {
+        requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeout))
+                .build();
+    }
+
+    /**
+     * Open and, for https endpoints, handshake connections to the endpoint requests are
+     * sent to (the Payments Fraud endpoint in migration mode, RIS otherwise) and return
+     * them to the pool, so the first requests do not pay for DNS, TCP and TLS set up.
+     * In migration mode a bearer token is fetched as well if none is valid.
+     * </p>
+     * Connections already in the pool count towards the requested number, which is capped
+     * at the pool's per-route maximum. Only the blocking client's pool is warmed; in HTTP/2
+     * mode connections are opened on first use.
+     *
+     * @param connections number of live connections wanted
+     * @return number of connections that had to be opened
+     * @throws RisTransportException failed to open a connection or fetch the token
+     */
+    public int warmUp(int connections) throws RisTransportException {
+        if (migrationModeEnabled && authToken.isExpiring()) {
+            refreshAuthToken();
+        }
+
+        String endpoint = migrationModeEnabled ? paymentsFraudApiEndpoint : risServerUrl;
+        List<ConnectionEndpoint> endpoints = new ArrayList<>();
+        int opened = 0;
+        try {
+            HttpClientContext context = HttpClientContext.create();
+            HttpRoute route = new DefaultRoutePlanner(null).determineRoute(HttpHost.create(URI.create(endpoint)), context);
+            int count = Math.min(connections, connManager.getMaxPerRoute(route));
+            Timeout timeout = Timeout.ofMilliseconds(connectTimeout);
+            for (int i = 0; i < count; i++) {
+                ConnectionEndpoint connectionEndpoint = connManager.lease("warm-up-" + i, route, timeout, null).get(timeout);
+                if (!connectionEndpoint.isConnected()) {
+                    try {
+                        connManager.connect(connectionEndpoint, timeout, context);
+                    } catch (IOException e) {
+                        // discard the half-open connection instead of pooling it
+                        connectionEndpoint.close(CloseMode.IMMEDIATE);
+                        connManager.release(connectionEndpoint, null, TimeValue.ZERO_MILLISECONDS);
+                        throw e;
+                    }
+                    opened++;
+                }
+                endpoints.add(connectionEndpoint);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RisTransportException("Interrupted while warming up connections to " + endpoint, e);
+        } catch (Exception e) {
+            logger.warn("Error warming up connections to {}", endpoint, e);
+            throw new RisTransportException("An error occurred while warming up connections to " + endpoint, e);
+        } finally {
+            for (ConnectionEndpoint connectionEndpoint : endpoints) {
+                connManager.release(connectionEndpoint, null, TimeValue.ofMinutes(connectionTimeToLive));
+            }
+        }
+
+        logger.debug("Warmed up {} connections to {}, {} newly opened", endpoints.size(), endpoint, opened);
+        return opened;
+    }
+
+    /**
+     * Open a new connection to the endpoint requests are sent to, to find out whether it
+     * is reachable. Idle pooled connections to it are closed rather than reused, since
+     * they may have been opened before it failed. The new connection is pooled.
+     *
+     * @throws RisTransportException failed to open the connection
+     */
+    void probe() throws RisTransportException {
+        String endpoint = migrationModeEnabled ? paymentsFraudApiEndpoint : risServerUrl;
+        ConnectionEndpoint connectionEndpoint = null;
+        try {
+            HttpClientContext context = HttpClientContext.create();
+            HttpRoute route = new DefaultRoutePlanner(null).determineRoute(HttpHost.create(URI.create(endpoint)), context);
+            Timeout timeout = Timeout.ofMilliseconds(connectTimeout);
+            for (int discarded = 0; ; discarded++) {
+                connectionEndpoint = connManager.lease("probe", route, timeout, null).get(timeout);
+                if (!connectionEndpoint.isConnected()) {
+                    break;
+                }
+                connectionEndpoint.close(CloseMode.IMMEDIATE);
+                connManager.release(connectionEndpoint, null, TimeValue.ZERO_MILLISECONDS);
+                connectionEndpoint = null;
+                if (discarded >= connManager.getMaxPerRoute(route)) {
+                    throw new RisTransportException("No new connection to " + endpoint + " could be leased for the probe");
+                }
+            }
+            connManager.connect(connectionEndpoint, timeout, context);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RisTransportException("Interrupted while probing " + endpoint, e);
+        } catch (RisTransportException e) {
+            throw e;
+        } catch (Exception e) {
+            if (connectionEndpoint != null) {
+                connectionEndpoint.close(CloseMode.IMMEDIATE);
+            }
+            throw new RisTransportException("An error occurred while probing " + endpoint, e);
+        } finally {
+            if (connectionEndpoint != null) {
+                connManager.release(connectionEndpoint, null, connectionEndpoint.isConnected()
+                        ? TimeValue.ofMinutes(connectionTimeToLive) : TimeValue.ZERO_MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Keep at least the given number of live connections in the pool, also through quiet
+     * periods in which idle connections would otherwise expire. A background task checks
+     * the pool every {@value #KEEP_WARM_INTERVAL_SECONDS} seconds and opens connections
+     * through {@link #warmUp(int)} when fewer are left.
+     *
+     * @param connections minimum number of live connections, 0 to stop keeping the pool warm
+     */
+    public void setKeepWarmConnections(int connections) {
+        synchronized (this) {
+            if (keepWarmTask != null) {
+                keepWarmTask.cancel(false);
+                keepWarmTask = null;
+            }
+            if (connections > 0 && !closed) {
+                keepWarmTask = getScheduler().scheduleWithFixedDelay(() -> keepWarm(connections),
+                        0, KEEP_WARM_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private void keepWarm(int connections) {
+        connManager.closeExpired();
+        PoolStats stats = connManager.getTotalStats();
+        if (stats.getLeased() + stats.getAvailable() >= connections) {
+            return;
+        }
+        try {
+            warmUp(connections);
+        } catch (RisTransportException e) {
+            // logged by warmUp, try again on the next round
+        }
+    }
+
+    /**
+     * Get the number of requests currently queued for a pooled connection, across the
+     * blocking and the non-blocking client.
+     *
+     * @return number of pending connection leases
+     */
+    public int getLeaseQueueDepth() {
+        PoolStats asyncStats = getAsyncPoolStats();
+        return connManager.getTotalStats().getPending() + (asyncStats == null ? 0 : asyncStats.getPending());
+    }
+
+    /**
+     * Getter
+     *
+     * @return distribution of the time blocking requests waited for a pooled connection
+     */
+    public LatencyHistogram getLeaseWaitTimes() {
+        return leaseWaitTimes;
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of blocking requests that timed out waiting for a pooled connection
+     */
+    public long getLeaseTimeoutCount() {
+        return leaseTimeouts.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests aborted in flight, because their future was cancelled or
+     *         their deadline passed
+     */
+    public long getAbortedCount() {
+        return aborted.sum();
+    }
+
+    /**
+     * Use the given connection pool for blocking requests instead of this transport's
+     * own pool, for example to let several transports deliberately share one pool.
+     * A shared pool is not closed by {@link #close()}; its owner remains responsible
+     * for it. Must be called before the first request is sent.
+     *
+     * @param connectionManager pool to use, typically obtained from
+     *                          {@link #getConnectionManager()} of another transport.
+     */
+    public void setConnectionManager(PoolingHttpClientConnectionManager connectionManager) {
+        if (!connManagerShared) {
+            connManager.close();
+        }
+        connManager = connectionManager;
+        connManagerShared = true;
+    }
+
+    /**
+     * Getter
+     *
+     * @return connection pool used by blocking requests
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connManager;
+    }
+
+    /**
+     * Get the statistics of the pool used by blocking requests.
+     *
+     * @return leased, pending, available and max connections of the pool
+     */
+    public PoolStats getPoolStats() {
+        return connManager.getTotalStats();
+    }
+
+    /**
+     * Get the statistics of the pool used by the non-blocking client.
+     *
+     * @return pool statistics, or null if no asynchronous request was sent yet
+     */
+    public PoolStats getAsyncPoolStats() {
+        PoolingAsyncClientConnectionManager manager = asyncConnManager;
+        return manager == null ? null : manager.getTotalStats();
+    }
+
+    /**
+     * Set the number of I/O reactor threads used by {@link #sendRequestAsync(Map)}.
+     * Must be called before the first asynchronous request is sent.
+     *
+     * @param count number of I/O threads, defaults to the number of available processors.
+     */
+    public void setIoThreadCount(int count) {
+        ioThreadCount = count;
+    }
+
+    /**
+     * Enable HTTP/2 mode. When enabled, both {@link #sendRequest(Map)} and
+     * {@link #sendRequestAsync(Map)} use the non-blocking client, which negotiates h2
+     * over TLS with ALPN and multiplexes concurrent RIS and Payments Fraud requests over
+     * a few connections. Servers that do not offer h2 are spoken to over HTTP/1.1.
+     * </p>
+     * Must be called before the first request is sent. The protocol is fixed when the
+     * non-blocking client is created, so once it exists a change is ignored with a
+     * warning.
+     *
+     * @param enabled true to send requests over HTTP/2
+     */
+    public synchronized void setHttp2Enabled(boolean enabled) {
+        if (httpAsyncClient != null && enabled != http2Enabled) {
+            logger.warn("Ignoring the change of HTTP/2 mode, the non-blocking client was already created");
+            return;
+        }
+        http2Enabled = enabled;
+    }
+
+    /**
+     * Getter
+     *
+     * @return is HTTP/2 mode enabled
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    private ConnectionConfig connectionConfig() {
+        return ConnectionConfig.custom()
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                .setTimeToLive(TimeValue.ofMinutes(connectionTimeToLive))
+                .build();
     }
 
     private CloseableHttpClient getHttpClient() {
-        if (httpClient == null) {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClientBuilder
+                            .create()
+                            .setConnectionManager(new LeaseTimingConnectionManager(connManager, leaseWaitTimes, leaseTimeouts))
+                            .setConnectionManagerShared(connManagerShared)
+                            // surface 429 and 503 as RisThrottledException instead of retrying
+                            // them in the client; a POST is never retried on I/O errors anyway
+                            .disableAutomaticRetries()
+                            .build();
+                    httpClient = client;
+                }
+            }
+        }
+
+        return client;
+    }
+
+    private CloseableHttpAsyncClient getHttpAsyncClient() {
+        CloseableHttpAsyncClient client = httpAsyncClient;
+        if (client == null) {
             synchronized (this) {
-                httpClient = HttpClientBuilder
-                        .create()
-                        .setConnectionManager(connManager)
-                        .build();
+                client = httpAsyncClient;
+                if (client == null) {
+                    PoolingAsyncClientConnectionManager manager = PoolingAsyncClientConnectionManagerBuilder.create()
+                            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                            .setConnPoolPolicy(PoolReusePolicy.FIFO)
+                            .setMaxConnTotal(connManager.getMaxTotal())
+                            .setMaxConnPerRoute(connManager.getDefaultMaxPerRoute())
+                            .setDefaultConnectionConfig(connectionConfig())
+                            .setDefaultTlsConfig(TlsConfig.custom()
+                                    .setVersionPolicy(http2Enabled ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                                    .build())
+                            .setMessageMultiplexing(http2Enabled)
+                            .build();
+                    client = HttpAsyncClients.custom()
+                            .setConnectionManager(manager)
+                            .disableAutomaticRetries()
+                            .addExecInterceptorFirst(EXEC_RUNTIME_ATTRIBUTE, (request, entityProducer, scope, chain, callback) -> {
+                                // kept so that an aborted exchange can discard its connection
+                                scope.clientContext.setAttribute(EXEC_RUNTIME_ATTRIBUTE, scope.execRuntime);
+                                chain.proceed(request, entityProducer, scope, callback);
+                            })
+                            .setIOReactorConfig(IOReactorConfig.custom()
+                                    .setIoThreadCount(ioThreadCount)
+                                    .setSoTimeout(Timeout.ofMilliseconds(DEFAULT_SOCKET_TIMEOUT_MS))
+                                    .build())
+                            .build();
+                    client.start();
+                    asyncConnManager = manager;
+                    httpAsyncClient = client;
+                }
             }
         }
 
-        return httpClient;
+        return client;
     }
 
     public static ByteArrayInputStream readAllInput(HttpEntity entity) throws IOException {
@@ -247,59 +783,344 @@ public class HttpApiTransport extends Transport {
         }
     }
 
+    /**
+     * Open a reader over the content of a RIS response entity.
+     *
+     * @param entity response entity, may be null
+     * @return reader decoding the entity stream with the response charset
+     * @throws IOException failed to open the entity stream
+     */
+    private static Reader responseReader(HttpEntity entity) throws IOException {
+        if (entity == null) {
+            return new StringReader("");
+        }
+        return new InputStreamReader(entity.getContent(), responseCharset(ContentType.parseLenient(entity.getContentType())));
+    }
+
+    /**
+     * Charset of a RIS response body: the one declared in its Content-Type, UTF-8 otherwise.
+     *
+     * @param contentType response content type, may be null
+     * @return charset to decode the body with
+     */
+    private static Charset responseCharset(ContentType contentType) {
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
     public Response sendRequest(Map<String, String> params) throws RisTransportException {
-        if (!params.containsKey("PTOK") || ("KHASH".equals(params.get("PENC")) && null == params.get("PTOK"))) {
-            params.put("PENC", "");
+        return send(params, null);
+    }
+
+    /**
+     * Send transaction data to RIS within a time budget covering the whole request.
+     * </p>
+     * The budget is spent in turn on waiting for a pooled connection, connecting and
+     * reading the response, each of which is still bounded by its own timeout as well.
+     * When the budget runs out the exchange is aborted, its connection discarded, and the
+     * request fails with a {@link RisDeadlineExceededException} whose cause tells how far
+     * the request got: a {@link RisPoolExhaustedException} cause means it was not sent.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the request failed or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return send(params, Deadline.after(timeout));
+    }
+
+    private Response send(Map<String, String> params, Deadline deadline) throws RisTransportException {
+        if (http2Enabled) {
+            return awaitResponse(sendAsync(params, deadline));
         }
+
+        ScheduledFuture<?> abort = null;
         try {
-            if (migrationModeEnabled && bearer.expiresAt.isBefore(OffsetDateTime.now().plusSeconds(60))) {
-                this.refreshAuthToken();
-            }
+            HttpPost httpPost = new HttpPost(prepareRequest(params));
+            httpPost.setConfig(requestConfig);
+            addRequestHeaders(httpPost, params);
 
-            HttpPost httpPost;
+            httpPost.setEntity(new FormUrlEncodedEntity(params, FormUrlEncoder.of(forceUtf8)));
 
-            if (migrationModeEnabled) {
-                httpPost = new HttpPost(paymentsFraudApiEndpoint);
+            if (deadline != null) {
+                // the token refresh in prepareRequest may have used up the budget
+                if (deadline.isExpired()) {
+                    throw deadline.exceeded(null);
+                }
+                // cancels the lease, the connect or the response read, whichever is under way
+                abort = deadline.schedule(() -> {
+                    if (httpPost.cancel()) {
+                        aborted.increment();
+                    }
+                });
+            }
 
-                bearerReadLock.lock();
-                try {
-                    httpPost.addHeader(PF_AUTH_HEADER, bearer.tokenType + " " + bearer.accessToken);
-                } finally {
-                    bearerReadLock.unlock();
+            try (CloseableHttpResponse httpResponse = getHttpClient().execute(httpPost)) {
+                if (isThrottled(httpResponse)) {
+                    EntityUtils.consume(httpResponse.getEntity());
+                    throw throttledException(httpResponse);
+                }
+                // parse straight off the entity stream; closing the reader hands the
+                // connection back to the pool
+                try (Reader reader = responseReader(httpResponse.getEntity())) {
+                    return parse(reader);
                 }
+            }
+
+        } catch (RisThrottledException | RisDeadlineExceededException e) {
+            logger.warn(e.getMessage());
+            throw e;
+        } catch (Exception ioe) {
+            logger.error("Error fetching RIS response", ioe);
+            throw responseException(ioe, deadline);
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Wrap a failure to get the RIS response, telling an exhausted connection pool apart
+     * from other transport errors. The blocking pool reports lease timeouts as
+     * ConnectionRequestTimeoutException, the non-blocking pool as DeadlineTimeoutException.
+     * A blocking request aborted while waiting for a connection fails with the
+     * CancellationException of its lease. A failure after the request's deadline,
+     * typically caused by aborting it, is reported as RisDeadlineExceededException.
+     */
+    private static RisTransportException responseException(Exception e, Deadline deadline) {
+        if (deadline != null && deadline.isExpired()) {
+            return deadline.exceeded(responseException(e, null));
+        }
+        if (e instanceof ConnectionRequestTimeoutException || e instanceof DeadlineTimeoutException
+                || e instanceof CancellationException) {
+            return new RisPoolExhaustedException("Timed out waiting for a pooled connection to RIS", e);
+        }
+        return new RisTransportException("An error occurred while getting the RIS response", e);
+    }
+
+    /**
+     * Whether RIS refused the request with 429 (Too Many Requests) or 503 (Service
+     * Unavailable). Other status codes carry a RIS response body and are parsed as before.
+     */
+    private static boolean isThrottled(HttpResponse httpResponse) {
+        return httpResponse.getCode() == HttpStatus.SC_TOO_MANY_REQUESTS
+                || httpResponse.getCode() == HttpStatus.SC_SERVICE_UNAVAILABLE;
+    }
+
+    private static RisThrottledException throttledException(HttpResponse httpResponse) {
+        long retryAfter = retryAfterMillis(httpResponse.getFirstHeader(HttpHeaders.RETRY_AFTER));
+        return new RisThrottledException("RIS throttled the request: received " + httpResponse.getCode()
+                + (retryAfter >= 0 ? ", retry after " + retryAfter + " ms" : ""), httpResponse.getCode(), retryAfter);
+    }
 
-                if (params.get("MERC") == null) {
-                    String clientId = this.paymentsFraudClientId;
-                    params.put("MERC", clientId); // override merc with client id
-                    httpPost.addHeader(CUSTOM_HEADER_MERCHANT_ID, clientId);
-                } else {
-                    httpPost.addHeader(CUSTOM_HEADER_MERCHANT_ID, params.get("MERC"));
+    /**
+     * Parse a Retry-After header, given either in seconds or as an HTTP date.
+     *
+     * @param header Retry-After header, may be null
+     * @return requested delay in milliseconds, -1 if absent or unreadable
+     */
+    static long retryAfterMillis(Header header) {
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Instant date = DateUtils.parseStandardDate(value);
+            return date == null ? -1 : Math.max(0, date.toEpochMilli() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Send transaction data to RIS over the non-blocking client.
+     * </p>
+     * The calling thread only prepares the request; the exchange and response parsing
+     * run on the I/O reactor threads, which use a connection pool separate from the one
+     * used by {@link #sendRequest(Map)}.
+     * </p>
+     * Cancelling the returned future aborts the exchange: a request still waiting for a
+     * connection is not sent, and a connection the request was already written to is
+     * closed rather than returned to the pool, since its response would still be on the
+     * way. Over HTTP/2 only the stream is reset. Aborted requests are counted in
+     * {@link #getAbortedCount()}.
+     *
+     * @param params parameters to send
+     * @return future completed with the RIS response
+     */
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        return sendAsync(params, null);
+    }
+
+    /**
+     * Send transaction data to RIS over the non-blocking client within a time budget
+     * covering the whole request. When the budget is spent the exchange is cancelled and
+     * the future fails with a {@link RisDeadlineExceededException}.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return future completed with the RIS response
+     */
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        return sendAsync(params, Deadline.after(timeout));
+    }
+
+    private CompletableFuture<Response> sendAsync(Map<String, String> params, Deadline deadline) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        SimpleHttpRequest request;
+        try {
+            request = SimpleHttpRequest.create(Method.POST, URI.create(prepareRequest(params)));
+            request.setConfig(requestConfig);
+            addRequestHeaders(request, params);
+            FormUrlEncoder encoder = FormUrlEncoder.of(forceUtf8);
+            request.setBody(encoder.encode(params), ContentType.APPLICATION_FORM_URLENCODED.withCharset(encoder.getCharset()));
+        } catch (Exception e) {
+            logger.error("Error preparing RIS request", e);
+            result.completeExceptionally(new RisTransportException("An error occurred while preparing the RIS request", e));
+            return result;
+        }
+
+        if (deadline != null && deadline.isExpired()) {
+            result.completeExceptionally(deadline.exceeded(null));
+            return result;
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        Future<SimpleHttpResponse> exchange = getHttpAsyncClient().execute(request, context, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse httpResponse) {
+                if (isThrottled(httpResponse)) {
+                    RisThrottledException e = throttledException(httpResponse);
+                    logger.warn(e.getMessage());
+                    result.completeExceptionally(e);
+                    return;
                 }
-            } else {
-                httpPost = new HttpPost(this.risServerUrl);
+                byte[] body = httpResponse.getBodyBytes();
+                try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body == null ? new byte[0] : body),
+                        responseCharset(httpResponse.getContentType()))) {
+                    result.complete(parse(reader));
+                } catch (Exception e) {
+                    failed(e);
+                }
+            }
 
-                httpPost.addHeader(CUSTOM_HEADER_API_KEY, this.apiKey);
-                httpPost.addHeader(CUSTOM_HEADER_MERCHANT_ID, params.get("MERC"));
+            @Override
+            public void failed(Exception ex) {
+                logger.error("Error fetching RIS response", ex);
+                result.completeExceptionally(responseException(ex, deadline));
             }
 
-            httpPost.addHeader("Content-Type", "application/x-www-form-urlencoded");
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
 
-            if (forceUtf8) {
-                httpPost.setEntity(new UrlEncodedFormEntity(convertToNameValuePair(params), StandardCharsets.UTF_8));
-            } else {
-                httpPost.setEntity(new UrlEncodedFormEntity(convertToNameValuePair(params)));
+        // a future completed before the exchange, by cancelling it or by the deadline, aborts
+        // the exchange; an HTTP/1.1 connection in mid-exchange is then closed instead of pooled
+        result.whenComplete((response, e) -> {
+            if (exchange.cancel(true)) {
+                aborted.increment();
+                discardAbandonedEndpoint(context);
             }
+        });
+        if (deadline != null) {
+            ScheduledFuture<?> abort = deadline.schedule(() -> result.completeExceptionally(deadline.exceeded(null)));
+            result.whenComplete((response, e) -> abort.cancel(false));
+        }
+
+        return result;
+    }
+
+    /**
+     * Discard the connection of a cancelled exchange if it is still leased. httpclient5
+     * loses the cancellation of an exchange whose connection was established before the
+     * submitting thread returned, which would keep the connection leased until the socket
+     * timeout.
+     */
+    private static void discardAbandonedEndpoint(HttpClientContext context) {
+        Object runtime = context.getAttribute(EXEC_RUNTIME_ATTRIBUTE);
+        if (runtime instanceof AsyncExecRuntime && ((AsyncExecRuntime) runtime).isEndpointAcquired()) {
+            ((AsyncExecRuntime) runtime).discardEndpoint();
+        }
+    }
 
-            try (CloseableHttpResponse httpResponse = getHttpClient().execute(httpPost);
-                 Reader reader = new InputStreamReader(readAllInput(httpResponse.getEntity()))
-            ) {
-                return parse(reader);
+    /**
+     * Release the I/O threads of the non-blocking client, the background scheduler and the
+     * connection pools owned by this transport. A pool set through {@link #setConnectionManager} is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        CloseableHttpAsyncClient asyncClient;
+        CloseableHttpClient client;
+        CloseableHttpClient authClient;
+        synchronized (this) {
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
             }
+            asyncClient = httpAsyncClient;
+            client = httpClient;
+            authClient = authHttpClient;
+            httpAsyncClient = null;
+            asyncConnManager = null;
+            httpClient = null;
+            authHttpClient = null;
+        }
+        if (authClient != null) {
+            authClient.close(CloseMode.GRACEFUL);
+        }
+        if (asyncClient != null) {
+            asyncClient.close(CloseMode.GRACEFUL);
+        }
+        if (client != null) {
+            client.close(CloseMode.GRACEFUL);
+        } else if (!connManagerShared) {
+            connManager.close(CloseMode.GRACEFUL);
+        }
+    }
 
-        } catch (Exception ioe) {
-            logger.error("Error fetching RIS response", ioe);
-            throw new RisTransportException("An error occurred while getting the RIS response", ioe);
+    /**
+     * Normalize the request parameters, make sure the Payments Fraud bearer token is
+     * valid when migration mode is enabled, and resolve the endpoint to post to.
+     *
+     * @param params parameters to send
+     * @return endpoint url
+     * @throws RisTransportException failed to obtain the bearer token
+     */
+    private String prepareRequest(Map<String, String> params) throws RisTransportException {
+        if (!params.containsKey("PTOK") || ("KHASH".equals(params.get("PENC")) && null == params.get("PTOK"))) {
+            params.put("PENC", "");
         }
+
+        if (migrationModeEnabled) {
+            if (authToken.isExpiring()) {
+                this.refreshAuthToken();
+            }
+            if (params.get("MERC") == null) {
+                params.put("MERC", this.paymentsFraudClientId); // override merc with client id
+            }
+            return paymentsFraudApiEndpoint;
+        }
+
+        return this.risServerUrl;
+    }
+
+    private void addRequestHeaders(HttpRequest request, Map<String, String> params) {
+        if (migrationModeEnabled) {
+            request.addHeader(PF_AUTH_HEADER, authToken.authorization);
+        } else {
+            request.addHeader(CUSTOM_HEADER_API_KEY, this.apiKey);
+        }
+
+        request.addHeader(CUSTOM_HEADER_MERCHANT_ID, params.get("MERC"));
+        request.addHeader("Content-Type", "application/x-www-form-urlencoded");
     }
 
     protected Response parse(Reader r) throws RisResponseException {
@@ -331,55 +1152,179 @@ public class HttpApiTransport extends Transport {
         }
     }
 
+    /**
+     * Obtain a new bearer token from the Payments Fraud auth endpoint unless another
+     * thread or the background refresher already renewed it. Called on the request
+     * thread only when the current token is about to expire, which in the steady state
+     * the background refresher prevents.
+     *
+     * @throws RisTransportException failed to obtain the token
+     */
     protected void refreshAuthToken() throws RisTransportException {
-        bearerWriteLock.lock();
-
-        if (bearer.getExpiresAt().isAfter(OffsetDateTime.now().plusSeconds(60))) {
-            // previous thread updated it already
-            bearerWriteLock.unlock();
-            return;
+        tokenRefreshLock.lock();
+        try {
+            if (!authToken.isExpiring()) {
+                // previous thread updated it already
+                return;
+            }
+            fetchAuthToken();
+        } finally {
+            tokenRefreshLock.unlock();
         }
+    }
 
+    /**
+     * Renew the token on the background refresher thread and schedule the next renewal,
+     * or a retry with exponential backoff if it failed.
+     */
+    private void backgroundRefreshAuthToken() {
+        tokenRefreshLock.lock();
         try {
-            HttpPost httpPost = new HttpPost(paymentsFraudAuthEndpoint);
-            httpPost.addHeader("Content-Type", "application/x-www-form-urlencoded");
-            httpPost.addHeader(PF_AUTH_HEADER, "Basic " + paymentsFraudApiKey);
-            Map<String, String> params = new HashMap<>();
-            params.put("grant_type", "client_credentials");
-            params.put("scope", "k1_integration_api");
-
-            httpPost.setEntity(new UrlEncodedFormEntity(convertToNameValuePair(params)));
-
-            try (CloseableHttpClient httpClient = HttpClientBuilder
-                    .create()
-                    .build()) {
-
-                try (CloseableHttpResponse httpResponse = httpClient.execute(httpPost);
-                     Reader reader = new InputStreamReader(readAllInput(httpResponse.getEntity()))
-                ) {
-                    if (httpResponse.getCode() < 400) {
-                        ObjectMapper objectMapper = new ObjectMapper();
-                        BearerAuthResponse authResponse;
-                        //convert json string to object
-                        authResponse = objectMapper.readValue(reader, BearerAuthResponse.class);
-                        bearerReadLock.lock();
-                        bearer = authResponse;
-                        bearerReadLock.unlock();
-
-                    } else {
-                        bearerWriteLock.unlock();
-                        String message = "Error fetching auth token: received " + httpResponse.getCode() + " " + httpResponse.getReasonPhrase();
-                        logger.error(message);
-                        throw new RisTransportException("An error occurred while reading the auth token response: " + message);
-                    }
+            fetchAuthToken();
+            tokenRefreshRetryDelayMs = tokenRefreshMinRetryMs;
+        } catch (RisTransportException e) {
+            long delay = tokenRefreshRetryDelayMs;
+            tokenRefreshRetryDelayMs = Math.min(delay * 2, TOKEN_REFRESH_MAX_RETRY_MS);
+            logger.warn("Background bearer token refresh failed, retrying in {} ms", delay);
+            scheduleTokenRefresh(delay);
+        } finally {
+            tokenRefreshLock.unlock();
+        }
+    }
+
+    /**
+     * Request a new token and publish it. Must be called holding {@link #tokenRefreshLock}.
+     */
+    private void fetchAuthToken() throws RisTransportException {
+        HttpPost httpPost = new HttpPost(paymentsFraudAuthEndpoint);
+        httpPost.addHeader("Content-Type", "application/x-www-form-urlencoded");
+        httpPost.addHeader(PF_AUTH_HEADER, "Basic " + paymentsFraudApiKey);
+        Map<String, String> params = new HashMap<>();
+        params.put("grant_type", "client_credentials");
+        params.put("scope", "k1_integration_api");
+
+        httpPost.setEntity(new FormUrlEncodedEntity(params, FormUrlEncoder.ISO_8859_1));
+
+        BearerAuthResponse authResponse;
+        try (CloseableHttpResponse httpResponse = getAuthHttpClient().execute(httpPost);
+             Reader reader = responseReader(httpResponse.getEntity())
+        ) {
+            if (httpResponse.getCode() >= 400) {
+                String message = "Error fetching auth token: received " + httpResponse.getCode() + " " + httpResponse.getReasonPhrase();
+                logger.error(message);
+                throw new RisTransportException("An error occurred while reading the auth token response: " + message);
+            }
+            //convert json string to object
+            authResponse = OBJECT_MAPPER.readValue(reader, BearerAuthResponse.class);
+        } catch (IOException ioe) {
+            logger.error("Error fetching updating bearer auth token", ioe);
+            throw new RisTransportException("An error occurred while getting the auth token", ioe);
+        }
+
+        AuthToken token = AuthToken.of(authResponse);
+        bearer = authResponse;
+        authToken = token;
+
+        if (backgroundTokenRefreshEnabled) {
+            scheduleTokenRefresh(nextTokenRefreshDelayMs(token));
+        }
+    }
+
+    /**
+     * Delay until the background refresher should renew the given token: ahead of the
+     * point where request threads would refresh it themselves, minus a random jitter so
+     * that many transports do not hit the auth endpoint at the same moment.
+     */
+    private long nextTokenRefreshDelayMs(AuthToken token) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(token.refreshDeadline - System.nanoTime());
+        long jitterMs = ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(TOKEN_REFRESH_JITTER_SECONDS) + 1);
+        long delayMs = remainingMs - TimeUnit.SECONDS.toMillis(TOKEN_REFRESH_LEAD_SECONDS) - jitterMs;
+        // short lived tokens: renew halfway through their remaining life instead
+        return Math.max(Math.max(delayMs, remainingMs / 2), tokenRefreshMinDelayMs);
+    }
+
+    /**
+     * Immutable snapshot of a bearer token: the Authorization header value and the
+     * {@link System#nanoTime()} deadline after which request threads refresh it.
+     */
+    private static final class AuthToken {
+
+        /**
+         * Longest token lifetime taken into account, keeps the deadline clear of nanoTime overflow.
+         */
+        private static final long MAX_LIFETIME_SECONDS = TimeUnit.DAYS.toSeconds(365);
+
+        final String authorization;
+
+        final long refreshDeadline;
+
+        private AuthToken(String authorization, long refreshDeadline) {
+            this.authorization = authorization;
+            this.refreshDeadline = refreshDeadline;
+        }
+
+        static AuthToken of(BearerAuthResponse bearer) {
+            long remainingSeconds = Duration.between(OffsetDateTime.now(), bearer.getExpiresAt()).getSeconds() - 60;
+            remainingSeconds = Math.max(-1, Math.min(remainingSeconds, MAX_LIFETIME_SECONDS));
+            return new AuthToken(bearer.getTokenType() + " " + bearer.getAccessToken(),
+                    System.nanoTime() + TimeUnit.SECONDS.toNanos(remainingSeconds));
+        }
+
+        boolean isExpiring() {
+            return System.nanoTime() - refreshDeadline >= 0;
+        }
+    }
+
+    private void scheduleTokenRefresh(long delayMs) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (tokenRefreshTask != null) {
+                tokenRefreshTask.cancel(false);
+            }
+            tokenRefreshTask = getScheduler().schedule(this::backgroundRefreshAuthToken, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Single daemon thread running this transport's background tasks, created on first use.
+     * Callers must hold the monitor of this transport.
+     */
+    private ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "kount-ris-transport-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Client used for the Payments Fraud auth endpoint, with a small pool of its own so
+     * that token refreshes reuse a kept-alive TLS connection.
+     */
+    private CloseableHttpClient getAuthHttpClient() {
+        CloseableHttpClient client = authHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = authHttpClient;
+                if (client == null) {
+                    client = HttpClientBuilder
+                            .create()
+                            .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                    .setDefaultConnectionConfig(connectionConfig())
+                                    .setMaxConnTotal(AUTH_MAX_CONNECTIONS)
+                                    .setMaxConnPerRoute(AUTH_MAX_CONNECTIONS)
+                                    .build())
+                            .build();
+                    authHttpClient = client;
                 }
-            } catch (Exception ioe) {
-                bearerWriteLock.unlock();
-                logger.error("Error fetching updating bearer auth token", ioe);
-                throw new RisTransportException("An error occurred while getting the auth token", ioe);
             }
-        } finally {
-            bearerWriteLock.unlock();
         }
+
+        return client;
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.kount.ris.transport;
 import com.kount.ris.Response;
 import com.kount.ris.util.RisResponseException;
 import com.kount.ris.util.RisTransportException;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,6 +13,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.CertificateException;
@@ -235,14 +237,14 @@ public class KountHttpTransport extends Transport {
 			urlConn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
 			urlConn.setConnectTimeout(this.connectTimeout);
 			urlConn.setReadTimeout(this.readTimeout);
+			urlConn.setFixedLengthStreamingMode(FormUrlEncoder.UTF_8.encodedLength(params));
 
             Response responseObj;
 
-			try (OutputStreamWriter out = new OutputStreamWriter(urlConn.getOutputStream(), StandardCharsets.UTF_8)) {
-                writeParametersToOutput(out, params);
-                out.flush();
-            }
-			try (Reader reader = new BufferedReader(new InputStreamReader(urlConn.getInputStream()))) {
+			try (OutputStream out = urlConn.getOutputStream()) {
+				FormUrlEncoder.UTF_8.writeTo(params, out);
+			}
+			try (Reader reader = new InputStreamReader(urlConn.getInputStream(), responseCharset(urlConn.getContentType()))) {
                 responseObj = parse(reader);
             }
 		
@@ -254,6 +256,19 @@ public class KountHttpTransport extends Transport {
 		}
 	}
 
+	/**
+	 * Charset of a RIS response body: the one declared in its Content-Type, UTF-8 otherwise.
+	 *
+	 * @param contentType
+	 *            Content-Type header value, may be null
+	 * @return Charset
+	 */
+	private static Charset responseCharset(String contentType) {
+		ContentType type = contentType != null ? ContentType.parseLenient(contentType) : null;
+		Charset charset = type != null ? type.getCharset() : null;
+		return charset != null ? charset : StandardCharsets.UTF_8;
+	}
+
 	protected Response parse(Reader r) throws RisResponseException {
 		logger.trace("parse()");
 		return Response.parseResponse(r);
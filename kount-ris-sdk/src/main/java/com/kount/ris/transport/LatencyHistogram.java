@@ -0,0 +1,157 @@
+package com.kount.ris.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe, fixed size histogram of durations in nanoseconds.
+ * </p>
+ * Values are counted in log-linear buckets: each power of two is split into eight
+ * buckets, so percentiles are reported with a relative error below 12.5%. Recording is
+ * lock-free and allocation free, which makes it cheap enough for the request path.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Bits of the value below its highest set bit used to pick the bucket.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos duration in nanoseconds, negative values are counted as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since the given {@link System#nanoTime()} reading.
+     *
+     * @param startNanos start of the measured interval
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return largest recorded value in nanoseconds, 0 if none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the recorded values in nanoseconds, 0 if none
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Value below which the given percentage of recorded values fall, rounded up to
+     * the upper bound of its bucket.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return value in nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Convenience for {@link #getValueAtPercentile(double)} in milliseconds.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return value in milliseconds
+     */
+    public long getValueAtPercentileMillis(double percentile) {
+        return TimeUnit.NANOSECONDS.toMillis(getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Discard all recorded values. Values recorded concurrently may be lost or kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + getCount()
+                + ", mean=" + getMean()
+                + "ns, p50=" + getValueAtPercentile(50)
+                + "ns, p95=" + getValueAtPercentile(95)
+                + "ns, p99=" + getValueAtPercentile(99)
+                + "ns, max=" + getMax() + "ns]";
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,524 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport that spreads requests over several equivalent RIS endpoints, e.g. one per
+ * region, each reached through its own transport.
+ * </p>
+ * Every request goes to the healthy endpoint with the best score: the moving average
+ * (EWMA) of its latency, multiplied by the requests already in flight to it plus one and
+ * divided by its recent success rate. An endpoint without a latency sample in the last
+ * 10 seconds is sent a single request to measure it.
+ * </p>
+ * An endpoint is ejected after {@value #DEFAULT_EJECT_AFTER_FAILURES} consecutive failures
+ * (throttling, local rejections and requests the caller cancelled or ran out of budget
+ * for are not counted) and probed in the background every
+ * {@value #DEFAULT_PROBE_INTERVAL_MS} ms, by the {@link EndpointProbe} if one is set. Otherwise an {@link HttpApiTransport} endpoint is
+ * probed by opening a new connection to it; other endpoints are not probed and return
+ * only when a request sent to them while every endpoint is ejected succeeds. A returning
+ * endpoint is ejected again at its next failure.
+ * </p>
+ * A request that was not processed (connect failure, exhausted pool, throttling) fails
+ * over to the next best endpoint. Requests that may have reached RIS are not resent.
+ * </p>
+ * The RIS server url is set on each endpoint transport; {@link #setRisServerUrl(String)}
+ * is ignored.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class MultiEndpointTransport extends Transport {
+
+    public static final int DEFAULT_EJECT_AFTER_FAILURES = 5;
+    public static final long DEFAULT_PROBE_INTERVAL_MS = 5000;
+
+    /**
+     * Check of an ejected endpoint, run in the background before it is let back into
+     * rotation.
+     */
+    public interface EndpointProbe {
+        /**
+         * Check whether the endpoint is reachable, e.g. by sending a request to it.
+         *
+         * @param transport transport of the ejected endpoint
+         * @throws RisTransportException the endpoint is still unavailable
+         */
+        void probe(Transport transport) throws RisTransportException;
+    }
+
+    /**
+     * Weight of the newest sample in the latency and error rate averages.
+     */
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.1;
+
+    /**
+     * Age after which an endpoint's latency average is remeasured, so that an endpoint
+     * that was slow for a while gets traffic again once it recovers.
+     */
+    private static final int STALE_SAMPLE_SECONDS = 10;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(MultiEndpointTransport.class);
+
+    private final List<Endpoint> endpoints;
+
+    private volatile int ejectAfterFailures = DEFAULT_EJECT_AFTER_FAILURES;
+
+    private volatile long probeIntervalMs = DEFAULT_PROBE_INTERVAL_MS;
+
+    private volatile EndpointProbe endpointProbe;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor that accepts one transport per endpoint, each configured with its own
+     * RIS server url.
+     *
+     * @param transports transports of the equivalent endpoints
+     */
+    public MultiEndpointTransport(List<? extends Transport> transports) {
+        if (transports == null || transports.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint transport is required");
+        }
+        List<Endpoint> list = new ArrayList<>(transports.size());
+        for (Transport transport : transports) {
+            list.add(new Endpoint(transport));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Set how many consecutive failures eject an endpoint.
+     *
+     * @param failures consecutive failures, at least 1
+     */
+    public void setEjectAfterFailures(int failures) {
+        ejectAfterFailures = Math.max(1, failures);
+    }
+
+    /**
+     * Set how often ejected endpoints are probed.
+     *
+     * @param millis probe interval in milliseconds
+     */
+    public void setProbeInterval(long millis) {
+        probeIntervalMs = Math.max(1, millis);
+    }
+
+    /**
+     * Set the check ejected endpoints must pass before they are let back into rotation,
+     * replacing the connection probe of {@link HttpApiTransport} endpoints.
+     *
+     * @param probe endpoint check, null for the default
+     */
+    public void setEndpointProbe(EndpointProbe probe) {
+        endpointProbe = probe;
+    }
+
+    /**
+     * Getter
+     *
+     * @return snapshot of the health of every endpoint, in construction order
+     */
+    public List<EndpointStatus> getEndpointStatus() {
+        List<EndpointStatus> status = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            status.add(endpoint.status());
+        }
+        return status;
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        List<Endpoint> tried = new ArrayList<>(endpoints.size());
+        for (;;) {
+            Endpoint endpoint = select(tried);
+            long start = endpoint.started();
+            try {
+                Response response = endpoint.transport.sendRequest(params);
+                succeeded(endpoint, start);
+                return response;
+            } catch (RisTransportException | RuntimeException e) {
+                failed(endpoint, start, e);
+                tried.add(endpoint);
+                if (!shouldFailOver(e, tried)) {
+                    throw e;
+                }
+                logger.debug("Failing over from {} after {}", endpoint.transport.risServerUrl, TransportErrors.classify(e));
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        sendAttempt(params, new ArrayList<>(endpoints.size()), result, null);
+        return result;
+    }
+
+    /**
+     * Send the request within a time budget covering the failovers. Every endpoint is
+     * sent what is left of the budget.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return future completed with the response, or exceptionally with the failure of
+     *         the last endpoint tried or a RisDeadlineExceededException
+     */
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        deadline.bound(result);
+        sendAttempt(params, new ArrayList<>(endpoints.size()), result, deadline);
+        return result;
+    }
+
+    /**
+     * Ignored: endpoints are set through the constructor, one transport each, with the
+     * RIS server url set on each transport.
+     *
+     * @param url ignored
+     */
+    @Override
+    public void setRisServerUrl(String url) {
+        logger.warn("Ignoring RIS server url {}, set it on each endpoint transport instead", url);
+    }
+
+    @Override
+    public void setConnectTimeout(int timeout) {
+        super.setConnectTimeout(timeout);
+        for (Endpoint endpoint : endpoints) {
+            endpoint.transport.setConnectTimeout(timeout);
+        }
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+        super.setReadTimeout(timeout);
+        for (Endpoint endpoint : endpoints) {
+            endpoint.transport.setReadTimeout(timeout);
+        }
+    }
+
+    /**
+     * Stops the probes and closes every endpoint transport.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (Endpoint endpoint : endpoints) {
+            try {
+                endpoint.transport.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void sendAttempt(Map<String, String> params, List<Endpoint> tried, CompletableFuture<Response> result, Deadline deadline) {
+        if (result.isDone()) {
+            // cancelled or timed out by the caller, do not fail over
+            return;
+        }
+        Endpoint endpoint = select(tried);
+        long start = endpoint.started();
+        CompletableFuture<Response> sent;
+        try {
+            sent = deadline == null ? endpoint.transport.sendRequestAsync(params)
+                    : endpoint.transport.sendRequestAsync(params, deadline.remaining());
+        } catch (RuntimeException e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        CompletableFuture<Response> attempt = sent;
+        result.whenComplete((response, e) -> attempt.cancel(true));
+        attempt.whenComplete((response, e) -> {
+            if (e == null) {
+                succeeded(endpoint, start);
+                result.complete(response);
+                return;
+            }
+            Throwable error = TransportErrors.unwrap(e);
+            failed(endpoint, start, error);
+            if (result.isDone()) {
+                return;
+            }
+            tried.add(endpoint);
+            if (!shouldFailOver(error, tried)) {
+                result.completeExceptionally(error);
+                return;
+            }
+            sendAttempt(params, tried, result, deadline);
+        });
+    }
+
+    /**
+     * Pick the healthy endpoint with the best score, skipping those already tried. If every
+     * candidate is ejected, the one with the fewest consecutive failures is used.
+     */
+    private Endpoint select(List<Endpoint> tried) {
+        long now = System.nanoTime();
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        Endpoint fallback = null;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.ejected) {
+                if (fallback == null || endpoint.consecutiveFailures.get() < fallback.consecutiveFailures.get()) {
+                    fallback = endpoint;
+                }
+                continue;
+            }
+            double score = endpoint.score(now);
+            if (best == null || score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    private boolean shouldFailOver(Throwable error, List<Endpoint> tried) {
+        if (tried.size() >= endpoints.size()) {
+            return false;
+        }
+        return TransportErrors.isNotSent(error) || TransportErrors.classify(error) == TransportErrors.Kind.THROTTLED;
+    }
+
+    private void succeeded(Endpoint endpoint, long start) {
+        endpoint.succeeded(start);
+        if (endpoint.ejected) {
+            readmit(endpoint, 0);
+        }
+    }
+
+    private void failed(Endpoint endpoint, long start, Throwable error) {
+        TransportErrors.Kind kind = TransportErrors.classify(error);
+        if (kind == TransportErrors.Kind.REJECTED || kind == TransportErrors.Kind.THROTTLED || isCallerAbort(error)) {
+            // refused by a local policy, throttled or given up by the caller, says nothing
+            // about the endpoint
+            endpoint.inFlight.decrementAndGet();
+            return;
+        }
+        if (endpoint.failed(start, kind == TransportErrors.Kind.READ_TIMEOUT) >= ejectAfterFailures && !endpoint.ejected) {
+            eject(endpoint);
+        }
+    }
+
+    private void eject(Endpoint endpoint) {
+        synchronized (endpoint) {
+            if (endpoint.ejected) {
+                return;
+            }
+            endpoint.ejected = true;
+        }
+        logger.warn("Ejecting RIS endpoint {} after {} consecutive failures", endpoint.transport.risServerUrl,
+                endpoint.consecutiveFailures.get());
+        scheduleProbe(endpoint);
+    }
+
+    private void scheduleProbe(Endpoint endpoint) {
+        if (!closed) {
+            // with every worker busy, try again at the next interval
+            Scheduler.dispatch(() -> probe(endpoint), () -> scheduleProbe(endpoint), probeIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void probe(Endpoint endpoint) {
+        if (closed || !endpoint.ejected) {
+            return;
+        }
+        EndpointProbe probe = endpointProbe;
+        HttpApiTransport http = DelegatingTransport.unwrap(endpoint.transport, HttpApiTransport.class);
+        if (probe == null && http == null) {
+            logger.debug("RIS endpoint {} cannot be probed, waiting for a request to succeed", endpoint.transport.risServerUrl);
+            return;
+        }
+        try {
+            if (probe != null) {
+                probe.probe(endpoint.transport);
+            } else {
+                http.probe();
+            }
+        } catch (RisTransportException | RuntimeException e) {
+            logger.debug("Probe of RIS endpoint {} failed", endpoint.transport.risServerUrl, e);
+            scheduleProbe(endpoint);
+            return;
+        }
+        // one more failure ejects it again
+        readmit(endpoint, ejectAfterFailures - 1);
+    }
+
+    private void readmit(Endpoint endpoint, int consecutiveFailures) {
+        synchronized (endpoint) {
+            if (!endpoint.ejected) {
+                return;
+            }
+            endpoint.consecutiveFailures.set(consecutiveFailures);
+            endpoint.ejected = false;
+        }
+        logger.info("RIS endpoint {} is back in rotation", endpoint.transport.risServerUrl);
+    }
+
+    private static boolean isCallerAbort(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof CancellationException || t instanceof RisDeadlineExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Health of one endpoint at the time of the snapshot.
+     */
+    public static final class EndpointStatus {
+
+        private final Transport transport;
+
+        private final double latencyMillis;
+
+        private final double errorRate;
+
+        private final boolean ejected;
+
+        EndpointStatus(Transport transport, double latencyMillis, double errorRate, boolean ejected) {
+            this.transport = transport;
+            this.latencyMillis = latencyMillis;
+            this.errorRate = errorRate;
+            this.ejected = ejected;
+        }
+
+        /**
+         * Getter
+         *
+         * @return transport of the endpoint
+         */
+        public Transport getTransport() {
+            return transport;
+        }
+
+        /**
+         * Getter
+         *
+         * @return moving average of the latency in milliseconds, 0 before the first response
+         */
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        /**
+         * Getter
+         *
+         * @return moving average of the share of failed requests, between 0 and 1
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * Getter
+         *
+         * @return true while the endpoint is out of rotation
+         */
+        public boolean isEjected() {
+            return ejected;
+        }
+    }
+
+    private static final class Endpoint {
+
+        final Transport transport;
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        volatile boolean ejected;
+
+        /**
+         * Guarded by this.
+         */
+        private double latencyNanos;
+
+        private double errorRate;
+
+        private long lastSampleNanos;
+
+        Endpoint(Transport transport) {
+            this.transport = transport;
+        }
+
+        long started() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        synchronized double score(long now) {
+            if (latencyNanos == 0 || now - lastSampleNanos > TimeUnit.SECONDS.toNanos(STALE_SAMPLE_SECONDS)) {
+                // no recent sample: send one request to measure it, then wait for its result
+                return inFlight.get() == 0 ? 0 : Double.MAX_VALUE;
+            }
+            return latencyNanos * (inFlight.get() + 1) / Math.max(0.1, 1 - errorRate);
+        }
+
+        void succeeded(long start) {
+            long latency = System.nanoTime() - start;
+            inFlight.decrementAndGet();
+            consecutiveFailures.set(0);
+            synchronized (this) {
+                lastSampleNanos = start + latency;
+                latencyNanos = latencyNanos == 0 ? latency : latencyNanos + LATENCY_ALPHA * (latency - latencyNanos);
+                errorRate -= ERROR_ALPHA * errorRate;
+            }
+        }
+
+        /**
+         * @return consecutive failures including this one
+         */
+        int failed(long start, boolean timedOut) {
+            long latency = System.nanoTime() - start;
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                lastSampleNanos = start + latency;
+                if (timedOut) {
+                    // a timeout is at least as slow as the time waited
+                    latencyNanos = latencyNanos + LATENCY_ALPHA * Math.max(0, latency - latencyNanos);
+                }
+                errorRate += ERROR_ALPHA * (1 - errorRate);
+            }
+            return consecutiveFailures.incrementAndGet();
+        }
+
+        synchronized EndpointStatus status() {
+            return new EndpointStatus(transport, latencyNanos / 1e6, errorRate, ejected);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that admits requests in two priority lanes, so that Update traffic such as
+ * chargeback backfills cannot starve the Inquiries checkouts are waiting for.
+ * </p>
+ * At most {@code capacity} requests are in flight, of which at most {@code updateLimit}
+ * may be Updates; the rest of the capacity is kept for Inquiries. When no permit is free
+ * requests wait in their lane, and a freed permit always goes to a waiting Inquiry before
+ * a waiting Update. Requests already sent are not interrupted.
+ * </p>
+ * Each lane has its own queue size and maximum wait. By default Inquiries wait at most
+ * {@value #DEFAULT_INQUIRY_MAX_QUEUE_WAIT_MS} ms and Updates up to
+ * {@value #DEFAULT_UPDATE_MAX_QUEUE_WAIT_MS} ms. A request that cannot be admitted fails
+ * with {@link RisOverloadedException} without being sent.
+ * </p>
+ * The capacity should not exceed the size of the wrapped transport's connection pool.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class PriorityTransport extends DelegatingTransport {
+
+    public static final int DEFAULT_INQUIRY_MAX_QUEUE_SIZE = 100;
+    public static final long DEFAULT_INQUIRY_MAX_QUEUE_WAIT_MS = 1000;
+    public static final int DEFAULT_UPDATE_MAX_QUEUE_SIZE = 10000;
+    public static final long DEFAULT_UPDATE_MAX_QUEUE_WAIT_MS = 60000;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(PriorityTransport.class);
+
+    private final LongAdder rejected = new LongAdder();
+
+    // the fields below are guarded by this
+
+    private final EnumMap<RequestClass, Lane> lanes = new EnumMap<>(RequestClass.class);
+
+    private int capacity;
+
+    private int updateLimit;
+
+    private int inFlight;
+
+    /**
+     * Constructor that accepts the transport to schedule requests on, the number of
+     * requests in flight and how many of them may be Updates.
+     *
+     * @param delegate    transport the requests are sent with
+     * @param capacity    requests in flight at most
+     * @param updateLimit Updates in flight at most, below capacity to keep room for Inquiries
+     */
+    public PriorityTransport(Transport delegate, int capacity, int updateLimit) {
+        super(delegate);
+        lanes.put(RequestClass.INQUIRY, new Lane(DEFAULT_INQUIRY_MAX_QUEUE_SIZE, DEFAULT_INQUIRY_MAX_QUEUE_WAIT_MS));
+        lanes.put(RequestClass.UPDATE, new Lane(DEFAULT_UPDATE_MAX_QUEUE_SIZE, DEFAULT_UPDATE_MAX_QUEUE_WAIT_MS));
+        setCapacity(capacity, updateLimit);
+    }
+
+    /**
+     * Change the capacity, e.g. after resizing the connection pool.
+     *
+     * @param capacity    requests in flight at most
+     * @param updateLimit Updates in flight at most
+     */
+    public void setCapacity(int capacity, int updateLimit) {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            this.capacity = Math.max(1, capacity);
+            this.updateLimit = Math.min(Math.max(0, updateLimit), this.capacity);
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Set how many requests of a class may wait for a permit.
+     *
+     * @param requestClass lane to configure
+     * @param size         queue size, 0 to reject requests that cannot be sent at once
+     */
+    public synchronized void setMaxQueueSize(RequestClass requestClass, int size) {
+        lanes.get(requestClass).maxQueueSize = Math.max(0, size);
+    }
+
+    /**
+     * Set how long a request of a class may wait for a permit before it is rejected.
+     *
+     * @param requestClass lane to configure
+     * @param millis       maximum queue wait in milliseconds
+     */
+    public synchronized void setMaxQueueWait(RequestClass requestClass, long millis) {
+        lanes.get(requestClass).maxQueueWaitMs = Math.max(0, millis);
+    }
+
+    /**
+     * Getter
+     *
+     * @param requestClass lane
+     * @return requests of the class in flight
+     */
+    public synchronized int getInFlight(RequestClass requestClass) {
+        return lanes.get(requestClass).inFlight;
+    }
+
+    /**
+     * Getter
+     *
+     * @param requestClass lane
+     * @return requests of the class waiting for a permit
+     */
+    public synchronized int getQueueLength(RequestClass requestClass) {
+        return lanes.get(requestClass).waiters.size();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests rejected with RisOverloadedException
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        RequestClass requestClass = RequestClass.of(params);
+        CompletableFuture<Void> permit = acquire(requestClass);
+        try {
+            permit.get();
+        } catch (ExecutionException e) {
+            throw (RisTransportException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!abandon(requestClass, permit)) {
+                // granted meanwhile, unless the queue wait ran out
+                permit.thenRun(() -> release(requestClass));
+            }
+            throw new RisTransportException("Interrupted while waiting for a RIS request permit", e);
+        }
+
+        try {
+            return delegate.sendRequest(params);
+        } finally {
+            release(requestClass);
+        }
+    }
+
+    /**
+     * Send the request within a time budget. Time spent waiting for a permit is taken
+     * from the budget, and the request leaves its queue when the budget is spent.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the request failed, was rejected or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return awaitResponse(sendRequestAsync(params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        return sendAsync(params, null);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        return sendAsync(params, Deadline.after(timeout));
+    }
+
+    private CompletableFuture<Response> sendAsync(Map<String, String> params, Deadline deadline) {
+        RequestClass requestClass = RequestClass.of(params);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        if (deadline != null) {
+            deadline.bound(result);
+            if (result.isDone()) {
+                return result;
+            }
+        }
+        CompletableFuture<Void> permit = acquire(requestClass);
+        permit.whenComplete((v, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                // cancelled or out of time while queued
+                release(requestClass);
+                return;
+            }
+            CompletableFuture<Response> attempt = sendDelegate(params, deadline);
+            result.whenComplete((response, e) -> attempt.cancel(true));
+            attempt.whenComplete((response, e) -> {
+                release(requestClass);
+                if (e == null) {
+                    result.complete(response);
+                } else {
+                    result.completeExceptionally(TransportErrors.unwrap(e));
+                }
+            });
+        });
+        result.whenComplete((response, e) -> {
+            if (e != null) {
+                abandon(requestClass, permit);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<Void> acquire(RequestClass requestClass) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        long maxQueueWaitMs;
+        synchronized (this) {
+            Lane lane = lanes.get(requestClass);
+            // requests of the same class are admitted in order
+            if (lane.waiters.isEmpty() && admissible(requestClass)) {
+                admit(lane);
+                permit.complete(null);
+                return permit;
+            }
+            if (lane.waiters.size() >= lane.maxQueueSize) {
+                permit = null;
+            } else {
+                lane.waiters.add(permit);
+            }
+            maxQueueWaitMs = lane.maxQueueWaitMs;
+        }
+        if (permit == null) {
+            return reject(requestClass + " queue is full");
+        }
+
+        CompletableFuture<Void> queued = permit;
+        ScheduledFuture<?> timeout = Scheduler.schedule(() -> {
+            if (abandon(requestClass, queued)) {
+                rejected.increment();
+                queued.completeExceptionally(new RisOverloadedException(
+                        "No RIS request permit for " + requestClass + " became free within " + maxQueueWaitMs + " ms"));
+            }
+        }, maxQueueWaitMs, TimeUnit.MILLISECONDS);
+        queued.whenComplete((v, e) -> timeout.cancel(false));
+        return queued;
+    }
+
+    private CompletableFuture<Void> reject(String message) {
+        rejected.increment();
+        logger.debug(message);
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        permit.completeExceptionally(new RisOverloadedException(message));
+        return permit;
+    }
+
+    /**
+     * Remove a permit request from its lane.
+     *
+     * @return true if it was still queued, false if the permit was already granted
+     */
+    private synchronized boolean abandon(RequestClass requestClass, CompletableFuture<Void> permit) {
+        return lanes.get(requestClass).waiters.remove(permit);
+    }
+
+    private void release(RequestClass requestClass) {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            inFlight--;
+            lanes.get(requestClass).inFlight--;
+            granted = grant();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Must hold the monitor.
+     */
+    private boolean admissible(RequestClass requestClass) {
+        return inFlight < capacity
+                && (requestClass == RequestClass.INQUIRY || lanes.get(RequestClass.UPDATE).inFlight < updateLimit);
+    }
+
+    /**
+     * Must hold the monitor.
+     */
+    private void admit(Lane lane) {
+        inFlight++;
+        lane.inFlight++;
+    }
+
+    /**
+     * Hand free permits to waiting requests, Inquiries first. Must hold the monitor; the
+     * returned permits are completed after releasing it.
+     */
+    private List<CompletableFuture<Void>> grant() {
+        List<CompletableFuture<Void>> granted = null;
+        // declaration order puts INQUIRY first
+        for (RequestClass requestClass : RequestClass.values()) {
+            Lane lane = lanes.get(requestClass);
+            while (!lane.waiters.isEmpty() && admissible(requestClass)) {
+                if (granted == null) {
+                    granted = new ArrayList<>();
+                }
+                admit(lane);
+                granted.add(lane.waiters.poll());
+            }
+        }
+        return granted;
+    }
+
+    private static void complete(List<CompletableFuture<Void>> granted) {
+        if (granted != null) {
+            for (CompletableFuture<Void> permit : granted) {
+                permit.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Queue and counters of one request class. Guarded by the transport's monitor.
+     */
+    private static final class Lane {
+
+        final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+        int inFlight;
+
+        int maxQueueSize;
+
+        long maxQueueWaitMs;
+
+        Lane(int maxQueueSize, long maxQueueWaitMs) {
+            this.maxQueueSize = maxQueueSize;
+            this.maxQueueWaitMs = maxQueueWaitMs;
+        }
+    }
+}
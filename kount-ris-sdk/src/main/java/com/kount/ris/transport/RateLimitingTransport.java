@@ -0,0 +1,374 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisThrottledException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that paces requests per merchant (MERC) with a token bucket, so that bulk
+ * Update jobs and interactive Inquiries can share one client without tripping the
+ * server-side throttling.
+ * </p>
+ * Each merchant may send up to the configured rate, with bursts of up to one second's
+ * worth of requests after idle periods. Requests over the rate are delayed, not failed.
+ * </p>
+ * When RIS answers 429 or 503 ({@link RisThrottledException}), the merchant's bucket is
+ * paused for the Retry-After delay (one second without the header) and its rate is halved.
+ * The refused request was not processed and is queued again. Each successful response
+ * wins back 2% of the configured rate. A request that cannot be sent within the maximum
+ * wait fails with the last RisThrottledException, or with {@link RisOverloadedException}
+ * if RIS never refused it.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RateLimitingTransport extends DelegatingTransport {
+
+    public static final long DEFAULT_MAX_WAIT_MS = 30000;
+    public static final long DEFAULT_THROTTLE_PAUSE_MS = 1000;
+
+    /**
+     * Share of the configured rate the rate is never lowered below.
+     */
+    private static final double MIN_RATE_RATIO = 1.0 / 64;
+
+    /**
+     * Share of the configured rate regained per successful response.
+     */
+    private static final double RECOVERY_RATIO = 0.02;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(RateLimitingTransport.class);
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Double> merchantRates = new ConcurrentHashMap<>();
+
+    private final LongAdder throttled = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final double defaultRate;
+
+    private volatile long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_WAIT_MS);
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor that accepts the transport to pace and the rate each merchant may send at.
+     *
+     * @param delegate          transport the requests are sent with
+     * @param requestsPerSecond requests per second permitted per merchant
+     */
+    public RateLimitingTransport(Transport delegate, double requestsPerSecond) {
+        super(delegate);
+        this.defaultRate = checkRate(requestsPerSecond);
+    }
+
+    /**
+     * Set the rate of one merchant, overriding the rate given to the constructor.
+     *
+     * @param merchantId        merchant id as sent in MERC
+     * @param requestsPerSecond requests per second permitted for this merchant
+     */
+    public void setMerchantRate(String merchantId, double requestsPerSecond) {
+        merchantRates.put(merchantId, checkRate(requestsPerSecond));
+        Bucket bucket = buckets.get(merchantId);
+        if (bucket != null) {
+            bucket.setMaxRate(requestsPerSecond);
+        }
+    }
+
+    /**
+     * Set how long a request may be delayed, including pauses requested by RIS, before it
+     * fails.
+     *
+     * @param millis maximum wait in milliseconds
+     */
+    public void setMaxWait(long millis) {
+        maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    /**
+     * Getter
+     *
+     * @param merchantId merchant id as sent in MERC
+     * @return requests per second currently permitted for the merchant, lower than the
+     *         configured rate while recovering from throttling
+     */
+    public double getRate(String merchantId) {
+        Bucket bucket = buckets.get(merchantId);
+        if (bucket != null) {
+            return bucket.getRate();
+        }
+        return merchantRates.getOrDefault(merchantId, defaultRate);
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of 429 and 503 responses received
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of requests failed because they could not be sent within the maximum wait
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        Bucket bucket = bucket(params);
+        long latest = System.nanoTime() + maxWaitNanos;
+        RisThrottledException lastThrottled = null;
+        for (;;) {
+            long wait = bucket.reserve(latest);
+            if (wait < 0) {
+                throw rejection(bucket, lastThrottled, latest, null);
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RisTransportException("Interrupted while waiting for the RIS rate limit", e);
+            }
+            long sent = System.nanoTime();
+            try {
+                Response response = delegate.sendRequest(params);
+                bucket.onSuccess();
+                return response;
+            } catch (RisThrottledException e) {
+                onThrottled(bucket, sent, e);
+                lastThrottled = e;
+            }
+        }
+    }
+
+    /**
+     * Send the request within a time budget. The delay imposed by the rate limit is taken
+     * from the budget, and a request that could not be sent before the budget is spent
+     * fails with RisDeadlineExceededException without being sent.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the request failed, was rejected or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return awaitResponse(sendRequestAsync(params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        schedule(params, bucket(params), System.nanoTime() + maxWaitNanos, null, result, null);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        deadline.bound(result);
+        if (!result.isDone()) {
+            long maxWait = System.nanoTime() + maxWaitNanos;
+            long latest = deadline.nanos() - maxWait < 0 ? deadline.nanos() : maxWait;
+            schedule(params, bucket(params), latest, null, result, deadline);
+        }
+        return result;
+    }
+
+    /**
+     * Closes the wrapped transport. Requests still delayed by the rate limit fail without
+     * being sent.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+
+    /**
+     * @param latest   latest point in time on {@link System#nanoTime()} to send at
+     * @param deadline deadline of the request, null for none
+     */
+    private void schedule(Map<String, String> params, Bucket bucket, long latest,
+            RisThrottledException lastThrottled, CompletableFuture<Response> result, Deadline deadline) {
+        long wait = bucket.reserve(latest);
+        if (wait < 0) {
+            result.completeExceptionally(rejection(bucket, lastThrottled, latest, deadline));
+        } else if (wait == 0) {
+            send(params, bucket, latest, result, deadline);
+        } else {
+            ScheduledFuture<?> delayed = Scheduler.dispatch(() -> send(params, bucket, latest, result, deadline),
+                    () -> result.completeExceptionally(Scheduler.overloaded()), wait, TimeUnit.NANOSECONDS);
+            result.whenComplete((response, e) -> delayed.cancel(false));
+        }
+    }
+
+    private void send(Map<String, String> params, Bucket bucket, long latest, CompletableFuture<Response> result, Deadline deadline) {
+        if (result.isDone()) {
+            return;
+        }
+        if (closed) {
+            result.completeExceptionally(new RisTransportException("RateLimitingTransport is closed"));
+            return;
+        }
+        long sentNanos = System.nanoTime();
+        CompletableFuture<Response> attempt = sendDelegate(params, deadline);
+        result.whenComplete((response, e) -> attempt.cancel(true));
+        attempt.whenComplete((response, e) -> {
+            if (e == null) {
+                bucket.onSuccess();
+                result.complete(response);
+                return;
+            }
+            Throwable error = TransportErrors.unwrap(e);
+            if (error instanceof RisThrottledException) {
+                onThrottled(bucket, sentNanos, (RisThrottledException) error);
+                schedule(params, bucket, latest, (RisThrottledException) error, result, deadline);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    private void onThrottled(Bucket bucket, long sentNanos, RisThrottledException e) {
+        throttled.increment();
+        bucket.onThrottled(sentNanos, e.getRetryAfterMillis());
+        logger.debug("RIS throttled merchant {}, rate lowered to {}/s", bucket.merchantId, bucket.getRate());
+    }
+
+    private RisTransportException rejection(Bucket bucket, RisThrottledException lastThrottled, long latest, Deadline deadline) {
+        if (deadline != null && latest == deadline.nanos()) {
+            // the caller's budget ran out before the rate limit's wait did
+            return deadline.exceeded(lastThrottled);
+        }
+        rejected.increment();
+        if (lastThrottled != null) {
+            return lastThrottled;
+        }
+        return new RisOverloadedException("RIS rate limit of merchant " + bucket.merchantId
+                + " would delay the request beyond " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+    }
+
+    private Bucket bucket(Map<String, String> params) {
+        String merchantId = params.get("MERC");
+        return buckets.computeIfAbsent(merchantId == null ? "" : merchantId,
+                id -> new Bucket(id, merchantRates.getOrDefault(id, defaultRate)));
+    }
+
+    private static double checkRate(double requestsPerSecond) {
+        if (!(requestsPerSecond > 0) || Double.isInfinite(requestsPerSecond)) {
+            throw new IllegalArgumentException("Rate must be a positive number of requests per second");
+        }
+        return requestsPerSecond;
+    }
+
+    /**
+     * Token bucket of one merchant. Instead of adding tokens on a timer it tracks when the
+     * next request may be sent, and saves up unused time as stored permits for bursts.
+     */
+    private static final class Bucket {
+
+        private final String merchantId;
+
+        private double maxRate;
+
+        private double rate;
+
+        private double storedPermits;
+
+        private long nextFreeNanos = System.nanoTime();
+
+        private long lastCutNanos = System.nanoTime();
+
+        Bucket(String merchantId, double maxRate) {
+            this.merchantId = merchantId;
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        synchronized void setMaxRate(double maxRate) {
+            resync(System.nanoTime());
+            this.maxRate = maxRate;
+            this.rate = Math.min(rate, maxRate);
+        }
+
+        /**
+         * Take the next send slot.
+         *
+         * @return nanoseconds to wait before sending, or -1 if the slot is past the deadline
+         */
+        synchronized long reserve(long deadlineNanos) {
+            long now = System.nanoTime();
+            resync(now);
+            if (nextFreeNanos - deadlineNanos > 0) {
+                return -1;
+            }
+            long wait = Math.max(0, nextFreeNanos - now);
+            double fromStored = Math.min(1, storedPermits);
+            storedPermits -= fromStored;
+            nextFreeNanos += (long) ((1 - fromStored) * intervalNanos());
+            return wait;
+        }
+
+        synchronized void onSuccess() {
+            if (rate < maxRate) {
+                rate = Math.min(maxRate, rate + maxRate * RECOVERY_RATIO);
+            }
+        }
+
+        synchronized void onThrottled(long sentNanos, long retryAfterMillis) {
+            long now = System.nanoTime();
+            resync(now);
+            long pause = TimeUnit.MILLISECONDS.toNanos(retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_THROTTLE_PAUSE_MS);
+            if (now + pause - nextFreeNanos > 0) {
+                nextFreeNanos = now + pause;
+            }
+            storedPermits = 0;
+            // requests sent before the last cut were paced at the old rate, cut once for all of them
+            if (sentNanos - lastCutNanos > 0) {
+                rate = Math.max(maxRate * MIN_RATE_RATIO, rate / 2);
+                lastCutNanos = now;
+            }
+        }
+
+        private void resync(long now) {
+            if (now - nextFreeNanos > 0) {
+                storedPermits = Math.min(Math.max(1, rate), storedPermits + (now - nextFreeNanos) / intervalNanos());
+                nextFreeNanos = now;
+            }
+        }
+
+        private double intervalNanos() {
+            return TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.kount.ris.transport;
+
+import java.util.Map;
+
+/**
+ * Kind of RIS request, as far as transport policies are concerned.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public enum RequestClass {
+
+    /**
+     * Inquiry (MODE Q, P, W or J): a risk decision a checkout is waiting for.
+     */
+    INQUIRY,
+
+    /**
+     * Update (MODE U or X) of an earlier transaction.
+     */
+    UPDATE;
+
+    /**
+     * Classify the request parameters by their MODE.
+     *
+     * @param params request parameters
+     * @return UPDATE for update modes, INQUIRY otherwise
+     */
+    public static RequestClass of(Map<String, String> params) {
+        String mode = params.get("MODE");
+        return "U".equals(mode) || "X".equals(mode) ? UPDATE : INQUIRY;
+    }
+}
@@ -0,0 +1,273 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that retries requests after transient transport failures, as far as that is
+ * safe for the request.
+ * </p>
+ * A request that failed to connect never reached RIS and is always retried. After a read
+ * timeout or a lost connection RIS may already have processed it, so it is only retried
+ * when replaying it is idempotent: an Update that carries its TRAN, or an Inquiry that
+ * carries a SESS and so is recognised by RIS as the same session. Other failures, including
+ * an exhausted connection pool, are not retried.
+ * </p>
+ * Retries wait for an exponential backoff with full jitter and are paid from a retry
+ * budget that earns a fraction of a retry (10% by default) per request. When RIS slows
+ * down as a whole the budget runs dry and failures surface instead of multiplying load.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RetryingTransport extends DelegatingTransport {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 50;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 1000;
+    public static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+
+    /**
+     * Most retries that can be saved up during quiet periods and spent in a burst.
+     */
+    private static final int MAX_BUDGET = 10;
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LogManager.getLogger(RetryingTransport.class);
+
+    private final TokenBudget budget = new TokenBudget(DEFAULT_RETRY_BUDGET_RATIO, MAX_BUDGET);
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder retriesDenied = new LongAdder();
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private volatile long initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+
+    private volatile long maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor that accepts the transport to retry requests on.
+     *
+     * @param delegate transport the requests are sent with
+     */
+    public RetryingTransport(Transport delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Set the maximum number of times a request is sent, including the first attempt.
+     *
+     * @param attempts maximum attempts, at least 1
+     */
+    public void setMaxAttempts(int attempts) {
+        maxAttempts = Math.max(1, attempts);
+    }
+
+    /**
+     * Set the backoff bounds. The n-th retry waits a random time between zero and
+     * min(maxMs, initialMs * 2^(n-1)).
+     *
+     * @param initialMs backoff cap of the first retry in milliseconds
+     * @param maxMs     largest backoff in milliseconds
+     */
+    public void setBackoff(long initialMs, long maxMs) {
+        initialBackoffMs = Math.max(0, initialMs);
+        maxBackoffMs = Math.max(initialBackoffMs, maxMs);
+    }
+
+    /**
+     * Set how many retries may be sent per request on average, e.g. 0.1 for at most 10%
+     * extra requests.
+     *
+     * @param ratio retries per request
+     */
+    public void setRetryBudgetRatio(double ratio) {
+        budget.setRatio(ratio);
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of retries sent
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of retryable failures not retried because the budget was exhausted
+     */
+    public long getRetriesDeniedCount() {
+        return retriesDenied.sum();
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        return send(params, null);
+    }
+
+    /**
+     * Send the request within a time budget covering all attempts. Every attempt is sent
+     * with what is left of the budget, and no retry is made whose backoff would spend it.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the last attempt failed or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return send(params, Deadline.after(timeout));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        budget.deposit();
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        sendAttempt(params, 1, result, null);
+        return result;
+    }
+
+    /**
+     * Send the request without blocking, within a time budget covering all attempts.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return future completed with the response, or exceptionally with the failure of
+     *         the last attempt or a RisDeadlineExceededException
+     */
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        Deadline deadline = Deadline.after(timeout);
+        budget.deposit();
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        deadline.bound(result);
+        sendAttempt(params, 1, result, deadline);
+        return result;
+    }
+
+    /**
+     * Whether replaying the request cannot process it twice: an Update with its TRAN, or
+     * an Inquiry with its SESS.
+     *
+     * @param params request parameters
+     * @return true if the request may be sent again after it possibly reached RIS
+     */
+    protected boolean isIdempotent(Map<String, String> params) {
+        String key = RequestClass.of(params) == RequestClass.UPDATE ? "TRAN" : "SESS";
+        String value = params.get(key);
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * Stops retrying and closes the wrapped transport. Requests waiting for a retry fail
+     * with the error of their last attempt.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+
+    private Response send(Map<String, String> params, Deadline deadline) throws RisTransportException {
+        budget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return deadline == null ? delegate.sendRequest(params) : delegate.sendRequest(params, deadline.remaining());
+            } catch (RisTransportException e) {
+                long backoff = backoffMs(attempt);
+                if (!shouldRetry(params, e, attempt, backoff, deadline)) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void sendAttempt(Map<String, String> params, int attempt, CompletableFuture<Response> result, Deadline deadline) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<Response> sent = sendDelegate(params, deadline);
+        result.whenComplete((response, e) -> sent.cancel(true));
+        sent.whenComplete((response, e) -> {
+            if (e == null) {
+                result.complete(response);
+                return;
+            }
+            Throwable error = TransportErrors.unwrap(e);
+            long backoff = backoffMs(attempt);
+            if (!shouldRetry(params, error, attempt, backoff, deadline)) {
+                result.completeExceptionally(error);
+                return;
+            }
+            ScheduledFuture<?> retry = Scheduler.dispatch(() -> {
+                if (closed) {
+                    result.completeExceptionally(error);
+                } else {
+                    sendAttempt(params, attempt + 1, result, deadline);
+                }
+            }, () -> result.completeExceptionally(Scheduler.overloaded()), backoff, TimeUnit.MILLISECONDS);
+            result.whenComplete((r, x) -> retry.cancel(false));
+        });
+    }
+
+    private boolean shouldRetry(Map<String, String> params, Throwable error, int attempt, long backoffMs, Deadline deadline) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        TransportErrors.Kind kind = TransportErrors.classify(error);
+        boolean retryable = kind == TransportErrors.Kind.CONNECT_FAILURE
+                || ((kind == TransportErrors.Kind.READ_TIMEOUT || kind == TransportErrors.Kind.CONNECTION_LOST)
+                && isIdempotent(params));
+        if (!retryable) {
+            return false;
+        }
+        if (deadline != null && TimeUnit.MILLISECONDS.toNanos(backoffMs) >= deadline.remaining().toNanos()) {
+            logger.debug("No time left to retry after {}", kind);
+            return false;
+        }
+        if (!budget.tryWithdraw()) {
+            retriesDenied.increment();
+            logger.debug("Retry budget exhausted, not retrying after {}", kind);
+            return false;
+        }
+        retries.increment();
+        logger.debug("Retrying RIS request after {} (attempt {})", kind, attempt + 1);
+        return true;
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting at 1
+     * @return random backoff before the next attempt in milliseconds
+     */
+    long backoffMs(int attempt) {
+        long cap = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 30));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
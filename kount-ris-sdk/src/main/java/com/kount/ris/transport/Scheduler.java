@@ -0,0 +1,131 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.util.RisOverloadedException;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer shared by all transports of the package, for deadlines, queue timeouts, hedges,
+ * retries and probes. A single daemon thread runs the short tasks; tasks that send a
+ * request are handed to daemon worker threads, so that a blocking transport cannot hold
+ * up the timer.
+ * </p>
+ * A blocking send keeps its worker until it completes, which may take as long as its
+ * connect and read timeouts. The workers are therefore bounded, and a task finding every
+ * worker busy is refused rather than queued behind them.
+ * </p>
+ * The timer is never shut down. Transports that are closed cancel or ignore their tasks.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+final class Scheduler {
+
+    /**
+     * How long an idle worker thread is kept.
+     */
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Default maximum number of worker threads.
+     */
+    static final int DEFAULT_MAX_WORKERS = 256;
+
+    private Scheduler() {
+    }
+
+    /**
+     * Run a short task, such as failing a future, after a delay on the timer thread.
+     *
+     * @param task  task to run
+     * @param delay delay
+     * @param unit  unit of the delay
+     * @return handle to cancel the task with
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return Holder.TIMER.schedule(task, delay, unit);
+    }
+
+    /**
+     * Run a task that may send a request after a delay on a worker thread.
+     *
+     * @param task     task to run
+     * @param rejected short task run on the timer thread instead if every worker is busy
+     * @param delay    delay
+     * @param unit     unit of the delay
+     * @return handle to cancel the task with before it was handed to a worker
+     */
+    static ScheduledFuture<?> dispatch(Runnable task, Runnable rejected, long delay, TimeUnit unit) {
+        return Holder.TIMER.schedule(() -> {
+            try {
+                Holder.WORKERS.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected.run();
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Run a task that may block, such as a blocking send, on a worker thread.
+     *
+     * @param task task to run
+     * @throws RejectedExecutionException every worker is busy
+     */
+    static void execute(Runnable task) {
+        Holder.WORKERS.execute(task);
+    }
+
+    /**
+     * Failure of a request refused because every worker is busy.
+     *
+     * @return exception to fail the request with
+     */
+    static RisOverloadedException overloaded() {
+        return new RisOverloadedException("All " + Holder.WORKERS.getMaximumPoolSize()
+                + " RIS transport worker threads are busy");
+    }
+
+    /**
+     * Set the maximum number of worker threads, for tests.
+     *
+     * @param count maximum number of worker threads
+     */
+    static void setMaxWorkers(int count) {
+        Holder.WORKERS.setMaximumPoolSize(count);
+    }
+
+    /**
+     * Daemon threads, started on first use.
+     */
+    private static final class Holder {
+
+        static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+        static final ThreadPoolExecutor WORKERS = new ThreadPoolExecutor(0, DEFAULT_MAX_WORKERS,
+                WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), daemon("kount-ris-timer-worker-"));
+
+        private static ScheduledThreadPoolExecutor createTimer() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemon("kount-ris-timer"));
+            // most timeouts are cancelled long before they are due, do not keep them queued
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+
+        private static ThreadFactory daemon(String name) {
+            AtomicInteger count = new AtomicInteger();
+            return r -> {
+                Thread thread = new Thread(r, name.endsWith("-") ? name + count.incrementAndGet() : name);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport that sends identical Inquiries only once, such as those caused by a
+ * double-clicked "Place order" button or a client-side retry.
+ * </p>
+ * Inquiries are identified by MERC, SESS, ORDR and MODE. While one is in flight, an
+ * Inquiry with the same identity and the same parameters waits for it and receives the
+ * same Response. A successful Response is also handed to identical Inquiries arriving
+ * within the result window ({@value #DEFAULT_RESULT_WINDOW_MS} ms by default); failures
+ * are not kept. Inquiries without a SESS and Updates are always sent.
+ * </p>
+ * Cancelling the future of one caller does not cancel the shared request.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class SingleFlightTransport extends DelegatingTransport {
+
+    public static final long DEFAULT_RESULT_WINDOW_MS = 1000;
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder shared = new LongAdder();
+
+    private volatile long resultWindowMs = DEFAULT_RESULT_WINDOW_MS;
+
+    /**
+     * Constructor that accepts the transport to send the de-duplicated requests with.
+     *
+     * @param delegate transport the requests are sent with
+     */
+    public SingleFlightTransport(Transport delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Set how long a successful Response is handed to identical Inquiries after it arrived.
+     *
+     * @param millis result window in milliseconds, 0 to share in-flight requests only
+     */
+    public void setResultWindow(long millis) {
+        resultWindowMs = Math.max(0, millis);
+    }
+
+    /**
+     * Getter
+     *
+     * @return number of Inquiries answered by another caller's request
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    @Override
+    public Response sendRequest(Map<String, String> params) throws RisTransportException {
+        String key = key(params);
+        if (key == null) {
+            return delegate.sendRequest(params);
+        }
+        Flight flight = new Flight(params);
+        Flight joined = join(key, flight);
+        if (joined != flight) {
+            return awaitResponse(joined.result.thenApply(response -> response));
+        }
+        try {
+            Response response = delegate.sendRequest(params);
+            completed(key, flight, response, null);
+            return response;
+        } catch (RisTransportException | RuntimeException e) {
+            completed(key, flight, null, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+        String key = key(params);
+        if (key == null) {
+            return delegate.sendRequestAsync(params);
+        }
+        return share(key, params, null);
+    }
+
+    /**
+     * Send the request within a time budget. A request that joins one in flight waits for
+     * it no longer than its own budget; a request that is sent is sent with its budget,
+     * which then bounds the wait of the requests joining it.
+     *
+     * @param params  parameters to send
+     * @param timeout time budget of the request
+     * @return Response
+     * @throws RisTransportException the request failed or the budget was spent
+     */
+    @Override
+    public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+        return awaitResponse(sendRequestAsync(params, timeout));
+    }
+
+    @Override
+    public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+        String key = key(params);
+        if (key == null) {
+            return delegate.sendRequestAsync(params, timeout);
+        }
+        Deadline deadline = Deadline.after(timeout);
+        CompletableFuture<Response> result = share(key, params, deadline);
+        deadline.bound(result);
+        return result;
+    }
+
+    private CompletableFuture<Response> share(String key, Map<String, String> params, Deadline deadline) {
+        Flight flight = new Flight(params);
+        Flight joined = join(key, flight);
+        if (joined == flight) {
+            CompletableFuture<Response> sent = sendDelegate(params, deadline);
+            sent.whenComplete((response, e) -> completed(key, flight, response, e == null ? null : TransportErrors.unwrap(e)));
+        }
+        // a future of its own, so one caller cannot cancel the shared request
+        return joined.result.thenApply(response -> response);
+    }
+
+    /**
+     * Register the flight, or find an identical one in flight or in its result window.
+     *
+     * @return the flight to wait for; the given one if the caller has to send the request
+     */
+    private Flight join(String key, Flight flight) {
+        for (;;) {
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return flight;
+            }
+            if (existing.params.equals(flight.params)) {
+                shared.increment();
+                return existing;
+            }
+            // same identity but changed parameters, e.g. an updated cart: send it
+            if (flights.replace(key, existing, flight)) {
+                return flight;
+            }
+        }
+    }
+
+    private void completed(String key, Flight flight, Response response, Throwable error) {
+        long window = resultWindowMs;
+        if (error != null || window == 0) {
+            flights.remove(key, flight);
+        } else {
+            Scheduler.schedule(() -> flights.remove(key, flight), window, TimeUnit.MILLISECONDS);
+        }
+        if (error != null) {
+            flight.result.completeExceptionally(error);
+        } else {
+            flight.result.complete(response);
+        }
+    }
+
+    /**
+     * @return identity of the Inquiry, or null if it must not be shared
+     */
+    private static String key(Map<String, String> params) {
+        String session = params.get("SESS");
+        if (session == null || session.isEmpty() || RequestClass.of(params) != RequestClass.INQUIRY) {
+            return null;
+        }
+        return params.get("MERC") + '\u0000' + session + '\u0000' + params.get("ORDR") + '\u0000' + params.get("MODE");
+    }
+
+    private static final class Flight {
+
+        final Map<String, String> params;
+
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        Flight(Map<String, String> params) {
+            this.params = new HashMap<>(params);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.kount.ris.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket that earns a fraction of a token per request and pays one token
+ * per extra request (a hedge or a retry), so extra load stays within that fraction of the
+ * regular load.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+final class TokenBudget {
+
+    /**
+     * Tokens are counted in thousandths.
+     */
+    private static final long UNIT = 1000;
+
+    private final AtomicLong balance;
+
+    private final long capacity;
+
+    private volatile long deposit;
+
+    /**
+     * @param ratio     tokens earned per request
+     * @param maxTokens tokens that can be saved up and spent in a burst; the bucket starts full
+     */
+    TokenBudget(double ratio, int maxTokens) {
+        this.capacity = maxTokens * UNIT;
+        this.balance = new AtomicLong(capacity);
+        setRatio(ratio);
+    }
+
+    void setRatio(double ratio) {
+        deposit = Math.round(Math.max(ratio, 0) * UNIT);
+    }
+
+    /**
+     * Earn the per-request fraction of a token.
+     */
+    void deposit() {
+        long amount = deposit;
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + amount, capacity)));
+    }
+
+    /**
+     * Spend a token if one is available.
+     *
+     * @return true if the extra request may be sent
+     */
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < UNIT) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - UNIT));
+        return true;
+    }
+}
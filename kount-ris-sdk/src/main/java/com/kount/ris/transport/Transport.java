@@ -1,17 +1,25 @@
 package com.kount.ris.transport;
 
 import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
 import com.kount.ris.util.RisTransportException;
 import org.apache.hc.core5.http.NameValuePair;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URLEncoder;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * RIS data transport interface.
@@ -23,7 +31,7 @@ import java.util.Map;
  * @version $Id$
  * @copyright 2025 Equifax
  */
-public abstract class Transport {
+public abstract class Transport implements Closeable {
 
 	private static Object String;
 
@@ -37,6 +45,131 @@ public abstract class Transport {
 	 */
 	public abstract Response sendRequest(Map<String, String> params) throws RisTransportException;
 
+	/**
+	 * Send transaction data to RIS without blocking the calling thread.
+	 * </p>
+	 * The default implementation performs a blocking {@link #sendRequest(Map)} and
+	 * returns an already completed future. Transports that support non-blocking I/O
+	 * override this method.
+	 *
+	 * @param params parameters to send
+	 * @return future completed with the RIS response, or exceptionally with a
+	 *         {@link RisTransportException}
+	 */
+	public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		try {
+			result.complete(sendRequest(params));
+		} catch (RisTransportException | RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Send transaction data to RIS within a time budget covering the whole request:
+	 * waiting for a connection, connecting and reading the response.
+	 * </p>
+	 * The default implementation waits for {@link #sendRequestAsync(Map, Duration)}.
+	 *
+	 * @throws RisTransportException RIS transport exception, a
+	 *             {@link RisDeadlineExceededException} when the budget is spent
+	 * @param params parameters to send
+	 * @param timeout time budget of the request
+	 * @return Response
+	 */
+	public Response sendRequest(Map<String, String> params, Duration timeout) throws RisTransportException {
+		return awaitResponse(sendRequestAsync(params, timeout));
+	}
+
+	/**
+	 * Send transaction data to RIS without blocking the calling thread, within a time
+	 * budget covering the whole request.
+	 * </p>
+	 * The default implementation calls {@link #sendRequestAsync(Map)} on a worker thread,
+	 * since that may block, and fails the future with a
+	 * {@link RisDeadlineExceededException} when the budget is spent, whether or not the
+	 * send returned. The future of {@link #sendRequestAsync(Map)} is then cancelled, but a
+	 * blocking send keeps its worker thread until its own connect and read timeouts end
+	 * it. A request whose budget is spent before it is started is not sent. When every
+	 * worker thread is busy the future fails at once with a {@link RisOverloadedException}.
+	 *
+	 * @param params parameters to send
+	 * @param timeout time budget of the request
+	 * @return future completed with the RIS response, or exceptionally with a
+	 *         {@link RisTransportException}
+	 */
+	public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+		Deadline deadline = Deadline.after(timeout);
+		CompletableFuture<Response> result = new CompletableFuture<>();
+		deadline.bound(result);
+		if (result.isDone()) {
+			return result;
+		}
+		try {
+			Scheduler.execute(() -> {
+				if (result.isDone()) {
+					return;
+				}
+				CompletableFuture<Response> sent;
+				try {
+					sent = sendRequestAsync(params);
+				} catch (RuntimeException e) {
+					sent = new CompletableFuture<>();
+					sent.completeExceptionally(e);
+				}
+				CompletableFuture<Response> attempt = sent;
+				result.whenComplete((response, e) -> attempt.cancel(true));
+				attempt.whenComplete((response, e) -> {
+					if (e == null) {
+						result.complete(response);
+					} else {
+						result.completeExceptionally(TransportErrors.unwrap(e));
+					}
+				});
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(Scheduler.overloaded());
+		}
+		return result;
+	}
+
+	/**
+	 * Wait for a response future, unwrapping the {@link RisTransportException} it
+	 * completed with.
+	 *
+	 * @param future pending response
+	 * @return Response
+	 * @throws RisTransportException the request failed, or the calling thread was
+	 *             interrupted, in which case the future is cancelled
+	 */
+	protected static Response awaitResponse(CompletableFuture<Response> future) throws RisTransportException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RisTransportException) {
+				throw (RisTransportException) e.getCause();
+			}
+			throw new RisTransportException("An error occurred while getting the RIS response", e.getCause());
+		} catch (CancellationException e) {
+			throw new RisTransportException("The RIS request was cancelled", e);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RisTransportException("Interrupted while waiting for the RIS response", e);
+		}
+	}
+
+	/**
+	 * Release any resources (connection pools, I/O threads) held by this transport.
+	 * The default implementation does nothing.
+	 *
+	 * @throws IOException failed to release resources
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+
 	/**
 	 * Ris server endpoint url.
 	 */
@@ -92,7 +225,10 @@ public abstract class Transport {
 	 * @param out OutputStreamWriter
 	 * @param params params in use
 	 * @throws IOException failed to encode
+	 * @deprecated use {@link FormUrlEncoder#writeTo(Map, OutputStream)}, which encodes
+	 *             without intermediate strings
 	 */
+	@Deprecated
 	protected static void writeParametersToOutput(OutputStreamWriter out, Map<String, String> params)
 			throws IOException {
 		for (String key : params.keySet()) {
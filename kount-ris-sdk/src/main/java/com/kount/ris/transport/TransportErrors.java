@@ -0,0 +1,135 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.util.RisCircuitOpenException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisPoolExhaustedException;
+import com.kount.ris.util.RisThrottledException;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Classifies transport failures by what they say about the request: whether it can have
+ * reached RIS, and so whether sending it again could process it twice.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public final class TransportErrors {
+
+    /**
+     * Kind of transport failure.
+     */
+    public enum Kind {
+
+        /**
+         * No connection could be established (refused, unreachable, unknown host or
+         * connect timeout). The request was not sent.
+         */
+        CONNECT_FAILURE,
+
+        /**
+         * No pooled connection became available in time. The request was not sent.
+         */
+        POOL_EXHAUSTED,
+
+        /**
+         * The request was refused by the client itself, by an open circuit breaker or an
+         * exhausted concurrency limit.
+         * The request was not sent.
+         */
+        REJECTED,
+
+        /**
+         * RIS refused the request with 429 or 503. The request was not processed and can
+         * be sent again after the requested delay.
+         */
+        THROTTLED,
+
+        /**
+         * The response did not arrive within the read timeout. RIS may have processed
+         * the request.
+         */
+        READ_TIMEOUT,
+
+        /**
+         * The connection was reset or closed before a response arrived. RIS may have
+         * processed the request.
+         */
+        CONNECTION_LOST,
+
+        /**
+         * Any other failure, such as an unreadable response or a rejected request.
+         */
+        OTHER
+    }
+
+    private TransportErrors() {
+    }
+
+    /**
+     * Classify a failure by the most specific I/O exception in its cause chain.
+     *
+     * @param error failure, typically a RisTransportException
+     * @return kind of failure
+     */
+    public static Kind classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof RisPoolExhaustedException) {
+                return Kind.POOL_EXHAUSTED;
+            }
+            if (t instanceof RisCircuitOpenException || t instanceof RisOverloadedException) {
+                return Kind.REJECTED;
+            }
+            if (t instanceof RisThrottledException) {
+                return Kind.THROTTLED;
+            }
+            // a connect timeout is thrown before anything was sent; test it ahead of
+            // SocketTimeoutException, which httpclient5 5.5 makes ConnectTimeoutException extend
+            if (t instanceof ConnectTimeoutException || t instanceof ConnectException
+                    || t instanceof NoRouteToHostException || t instanceof UnknownHostException) {
+                return Kind.CONNECT_FAILURE;
+            }
+            if (t instanceof SocketTimeoutException) {
+                return Kind.READ_TIMEOUT;
+            }
+            if (t instanceof NoHttpResponseException || t instanceof SocketException) {
+                return Kind.CONNECTION_LOST;
+            }
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * Whether the failure guarantees that the request never reached RIS.
+     *
+     * @param error failure
+     * @return true for connect failures, pool exhaustion and requests rejected locally
+     */
+    public static boolean isNotSent(Throwable error) {
+        Kind kind = classify(error);
+        return kind == Kind.CONNECT_FAILURE || kind == Kind.POOL_EXHAUSTED || kind == Kind.REJECTED;
+    }
+
+    /**
+     * Strip the wrappers added by futures.
+     *
+     * @param error failure as reported by a future
+     * @return underlying failure
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
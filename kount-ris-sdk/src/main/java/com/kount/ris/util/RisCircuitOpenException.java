@@ -0,0 +1,27 @@
+package com.kount.ris.util;
+
+/**
+ * Ris transport exception thrown without contacting RIS while a circuit breaker is open
+ * because RIS has been failing or slow.
+ * 
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RisCircuitOpenException extends RisTransportException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 4508119523664710393L;
+
+	/**
+	 * Ris circuit open exception with a message.
+	 * 
+	 * @param message
+	 *            Exception message
+	 */
+	public RisCircuitOpenException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,40 @@
+package com.kount.ris.util;
+
+/**
+ * Ris transport exception thrown when the time budget given for a request is spent
+ * before its response arrived. The cause, if any, is the failure the request ran into
+ * when the budget ran out; without a cause RIS may or may not have received the request.
+ * 
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RisDeadlineExceededException extends RisTransportException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 4406813927759213501L;
+
+	/**
+	 * Ris deadline exceeded exception with a message.
+	 * 
+	 * @param message
+	 *            Exception message
+	 */
+	public RisDeadlineExceededException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Ris deadline exceeded exception constructor that accepts a message and a cause.
+	 * 
+	 * @param message
+	 *            Exception message
+	 * @param cause
+	 *            Cause
+	 */
+	public RisDeadlineExceededException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,27 @@
+package com.kount.ris.util;
+
+/**
+ * Ris transport exception thrown without contacting RIS when a client-side concurrency
+ * or rate limit is reached and the request could not be admitted in time.
+ * 
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RisOverloadedException extends RisTransportException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = -2871460523915372184L;
+
+	/**
+	 * Ris overloaded exception with a message.
+	 * 
+	 * @param message
+	 *            Exception message
+	 */
+	public RisOverloadedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,31 @@
+package com.kount.ris.util;
+
+/**
+ * Ris transport exception thrown when no pooled connection to RIS became available
+ * within the connection request (lease) timeout.
+ * </p>
+ * The request was never sent, so it can be retried or shed safely.
+ * 
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RisPoolExhaustedException extends RisTransportException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = -2675841130926187340L;
+
+	/**
+	 * Ris pool exhausted exception constructor that accepts a message and a cause.
+	 * 
+	 * @param message
+	 *            Exception message
+	 * @param cause
+	 *            Cause
+	 */
+	public RisPoolExhaustedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
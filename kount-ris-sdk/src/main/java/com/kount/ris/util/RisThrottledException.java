@@ -0,0 +1,65 @@
+package com.kount.ris.util;
+
+/**
+ * Ris transport exception thrown when the server refused a request with HTTP 429 (Too
+ * Many Requests) or 503 (Service Unavailable).
+ * </p>
+ * The request was not processed and can be sent again once the delay requested by the
+ * server's Retry-After header has passed.
+ *
+ * @author Kount &lt;custserv@kount.com&gt;
+ * @version $Id$
+ * @copyright 2025 Equifax
+ */
+public class RisThrottledException extends RisTransportException {
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 6203715497315808251L;
+
+	/**
+	 * HTTP status code of the response.
+	 */
+	private final int statusCode;
+
+	/**
+	 * Delay requested by the server in milliseconds, -1 if none was given.
+	 */
+	private final long retryAfterMillis;
+
+	/**
+	 * Ris throttled exception constructor that accepts a message, the status code and
+	 * the requested delay.
+	 *
+	 * @param message
+	 *            Exception message
+	 * @param statusCode
+	 *            HTTP status code, 429 or 503
+	 * @param retryAfterMillis
+	 *            Delay requested by the Retry-After header in milliseconds, -1 if absent
+	 */
+	public RisThrottledException(String message, int statusCode, long retryAfterMillis) {
+		super(message);
+		this.statusCode = statusCode;
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * Get the HTTP status code of the response.
+	 *
+	 * @return 429 or 503
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Get the delay requested by the server before sending again.
+	 *
+	 * @return delay in milliseconds, -1 if the response carried no Retry-After header
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
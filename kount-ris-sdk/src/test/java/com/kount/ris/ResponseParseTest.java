@@ -0,0 +1,54 @@
+package com.kount.ris;
+
+import com.kount.ris.util.RisResponseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ResponseParseTest {
+
+	@Test
+	public void testParseFields() throws RisResponseException {
+		String body = "VERS=0720\nMODE=Q\r\nTRAN=P01J0K4FSMMJ\rAUTO=A\n"
+				+ "RULES_TRIGGERED=2\nRULE_ID_0=1001\nRULE_DESCRIPTION_0=Score = high\n"
+				+ "RULE_ID_1=1002\nRULE_DESCRIPTION_1=\n"
+				+ "not a field\n\n=empty key\nCBD_SCORE=12";
+		Response response = Response.parseResponse(new StringReader(body));
+
+		assertEquals("0720", response.getVersion());
+		assertEquals("Q", response.getMode());
+		assertEquals("P01J0K4FSMMJ", response.getTransactionId());
+		assertEquals("A", response.getAuto());
+		assertEquals(2, response.getNumberRulesTriggered());
+		assertEquals("Score = high", response.getRulesTriggered().get("1001"));
+		assertEquals("", response.getRulesTriggered().get("1002"));
+		assertEquals("empty key", response.getParm(""));
+		assertNull(response.getParm("not a field"));
+		assertEquals("12", response.getLexisNexisCbdAttributes().get("SCORE"));
+	}
+
+	@Test
+	public void testParseLinesLongerThanBuffer() throws RisResponseException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			body.append("UNKNOWN_KEY_").append(i).append('=').append(i).append('\n');
+		}
+		body.append("LONG=").append(value).append("\nSCOR=42\n");
+
+		Response response = Response.parseResponse(new StringReader(body.toString()));
+		Map<String, String> attributes = response.getPrefixedResponseDataMap("UNKNOWN_KEY_");
+
+		assertEquals(200, attributes.size());
+		assertEquals("199", attributes.get("199"));
+		assertEquals(value.toString(), response.getParm("LONG"));
+		assertEquals("42", response.getScore());
+	}
+}
@@ -0,0 +1,59 @@
+package com.kount.ris;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionIndexTest {
+
+	@Test
+	public void testRecordAndResolve() throws Exception {
+		TransactionIndex index = new TransactionIndex(1024);
+		index.record(response("MODE=Q\nSESS=session-1\nORDR=order-1\nTRAN=P01J0D2C1K2P\n"));
+		index.record(response("MODE=E\nERRO=305\nERROR_COUNT=1\nERROR_0=305 BAD_TRAN\n"));
+
+		assertEquals("P01J0D2C1K2P", index.findBySessionId("session-1"));
+		assertEquals("P01J0D2C1K2P", index.findByOrderNumber("order-1"));
+		assertNull(index.findByOrderNumber("session-1"));
+
+		Update update = new Update();
+		update.setOrderNumber("order-1");
+		assertTrue(index.resolve(update));
+		assertEquals("P01J0D2C1K2P", update.getParams().get("TRAN"));
+		assertFalse(index.resolve(new Update()));
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		TransactionIndex index = new TransactionIndex(16, Duration.ofMillis(50));
+		index.record(response("MODE=Q\nSESS=session-1\nTRAN=P01J0D2C1K2P\n"));
+		assertEquals("P01J0D2C1K2P", index.findBySessionId("session-1"));
+		Thread.sleep(100);
+		assertNull(index.findBySessionId("session-1"));
+
+		index.record(response("MODE=Q\nSESS=session-2\nTRAN=P01J0D2C1K2Q\n"));
+		assertEquals("P01J0D2C1K2Q", index.findBySessionId("session-2"));
+		assertEquals(0, index.getEvictedCount());
+	}
+
+	@Test
+	public void testEvictionKeepsCapacity() throws Exception {
+		TransactionIndex index = new TransactionIndex(16);
+		for (int i = 0; i < 100; i++) {
+			index.record(response("MODE=Q\nSESS=session-" + i + "\nTRAN=TRAN" + i + "\n"));
+		}
+		assertEquals(16, index.getCapacity());
+		assertEquals(84, index.getEvictedCount());
+		assertEquals("TRAN99", index.findBySessionId("session-99"));
+	}
+
+	private static Response response(String body) throws Exception {
+		return Response.parseResponse(new StringReader(body));
+	}
+}
@@ -0,0 +1,68 @@
+package com.kount.ris;
+
+import com.kount.ris.util.AuthorizationStatus;
+import com.kount.ris.util.MerchantAcknowledgment;
+import com.kount.ris.util.RefundChargebackStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UpdateCoalescerTest {
+
+	@Test
+	public void testMergeLastWriteWins() {
+		List<Update> sent = new CopyOnWriteArrayList<>();
+		UpdateCoalescer coalescer = new UpdateCoalescer(sent::add, 60000);
+
+		Update declined = update("T1");
+		declined.setAuthorizationStatus(AuthorizationStatus.DECLINED);
+		coalescer.add(declined);
+		Update approved = update("T1");
+		approved.setAuthorizationStatus(AuthorizationStatus.APPROVED);
+		coalescer.add(approved);
+		Update acknowledged = update("T1");
+		acknowledged.setMerchantAcknowledgment(MerchantAcknowledgment.YES);
+		coalescer.add(acknowledged);
+		coalescer.add(update("T2"));
+		coalescer.add(new Update());
+		assertEquals(1, sent.size());
+		assertEquals(2, coalescer.getPendingCount());
+
+		coalescer.close();
+		assertEquals(3, sent.size());
+		assertEquals(2, coalescer.getCoalescedCount());
+		Update merged = sent.stream().filter(u -> "T1".equals(u.getParams().get("TRAN"))).findFirst().get();
+		assertEquals("A", merged.getParams().get("AUTH"));
+		assertEquals("Y", merged.getParams().get("MACK"));
+	}
+
+	@Test
+	public void testRefundChargebackFlushesAtOnce() {
+		List<Update> sent = new CopyOnWriteArrayList<>();
+		UpdateCoalescer coalescer = new UpdateCoalescer(sent::add, 60000);
+
+		Update acknowledged = update("T1");
+		acknowledged.setMerchantAcknowledgment(MerchantAcknowledgment.YES);
+		coalescer.add(acknowledged);
+		assertEquals(0, sent.size());
+		coalescer.add(update("T1").setRefundChargebackStatus(RefundChargebackStatus.CHARGEBACK));
+		assertEquals(1, sent.size());
+		assertEquals("Y", sent.get(0).getParams().get("MACK"));
+		assertEquals("C", sent.get(0).getParams().get("RFCB"));
+		assertEquals(0, coalescer.getPendingCount());
+
+		coalescer.close();
+		assertEquals(1, sent.size());
+		assertNull(sent.get(0).getParams().get("AUTH"));
+	}
+
+	private static Update update(String transactionId) {
+		Update update = new Update();
+		update.setTransactionId(transactionId);
+		return update;
+	}
+}
@@ -0,0 +1,120 @@
+package com.kount.ris;
+
+import com.kount.ris.transport.Transport;
+import com.kount.ris.util.RisException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisResponseException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpdateDispatcherTest {
+
+	@Test
+	public void testDrainOnClose() throws Exception {
+		StubTransport transport = new StubTransport();
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		UpdateDispatcher dispatcher = new UpdateDispatcher(client, 100, 2);
+		for (int i = 0; i < 50; i++) {
+			assertTrue(dispatcher.dispatch(update("T" + i)));
+		}
+		dispatcher.close();
+
+		assertEquals(50, transport.sent.size());
+		assertEquals(50, dispatcher.getSentCount());
+		assertFalse(dispatcher.dispatch(update("late")));
+		assertEquals(1, dispatcher.getRejectedCount());
+	}
+
+	@Test
+	public void testRejectWhenFull() throws Exception {
+		StubTransport transport = new StubTransport();
+		transport.gate = new CountDownLatch(1);
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<RisException> failures = new CopyOnWriteArrayList<>();
+		UpdateDispatcher dispatcher = new UpdateDispatcher(client, 1, 1);
+		dispatcher.setOverflowPolicy(UpdateDispatcher.OverflowPolicy.REJECT);
+		dispatcher.setFailureListener((update, error) -> failures.add(error));
+
+		assertTrue(dispatcher.dispatch(update("T1")));
+		assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+		assertTrue(dispatcher.dispatch(update("T2")));
+		assertFalse(dispatcher.dispatch(update("T3")));
+		transport.gate.countDown();
+		dispatcher.close();
+
+		assertEquals(2, dispatcher.getSentCount());
+		assertEquals(1, failures.size());
+		assertTrue(failures.get(0) instanceof RisOverloadedException);
+	}
+
+	@Test
+	public void testFailuresReported() throws Exception {
+		StubTransport transport = new StubTransport();
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<RisException> failures = new CopyOnWriteArrayList<>();
+		UpdateDispatcher dispatcher = new UpdateDispatcher(client, 10, 1);
+		dispatcher.setFailureListener((update, error) -> failures.add(error));
+
+		dispatcher.dispatch(update("fail"));
+		dispatcher.dispatch(update("error"));
+		dispatcher.close();
+
+		assertEquals(2, dispatcher.getFailedCount());
+		assertTrue(failures.get(0) instanceof RisTransportException);
+		assertTrue(failures.get(1) instanceof RisResponseException);
+		assertEquals("305", ((RisResponseException) failures.get(1)).getCode());
+	}
+
+	private static Update update(String transactionId) {
+		Update update = new Update();
+		update.setTransactionId(transactionId);
+		return update;
+	}
+
+	private static class StubTransport extends Transport {
+
+		final List<String> sent = new CopyOnWriteArrayList<>();
+
+		final CountDownLatch started = new CountDownLatch(1);
+
+		volatile CountDownLatch gate;
+
+		@Override
+		public Response sendRequest(Map<String, String> params) throws RisTransportException {
+			started.countDown();
+			try {
+				if (gate != null) {
+					gate.await();
+				}
+			} catch (InterruptedException e) {
+				throw new RisTransportException("interrupted", e);
+			}
+			String transactionId = params.get("TRAN");
+			if ("fail".equals(transactionId)) {
+				throw new RisTransportException("connection refused");
+			}
+			sent.add(transactionId);
+			try {
+				return Response.parseResponse(new StringReader("error".equals(transactionId)
+						? "MODE=E\nERRO=305\nERROR_COUNT=1\nERROR_0=305 BAD_TRAN\n"
+						: "MODE=U\nTRAN=" + transactionId + "\n"));
+			} catch (RisResponseException e) {
+				throw new RisTransportException("unreadable response", e);
+			}
+		}
+	}
+}
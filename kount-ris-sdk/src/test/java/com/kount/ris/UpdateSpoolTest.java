@@ -0,0 +1,333 @@
+package com.kount.ris;
+
+import com.kount.ris.transport.Transport;
+import com.kount.ris.util.RisException;
+import com.kount.ris.util.RisResponseException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.net.ConnectException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpdateSpoolTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void testReplayInOrderAfterRestart() throws Exception {
+		StubTransport transport = new StubTransport();
+		transport.down = true;
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+
+		UpdateSpool spool = new UpdateSpool(client, directory, 2048);
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			spool.append(update("T" + i));
+			expected.add("T" + i);
+		}
+		assertTrue(spool.getSegmentCount() > 2, "segments: " + spool.getSegmentCount());
+		spool.close();
+
+		spool = new UpdateSpool(client, directory, 2048);
+		assertEquals(100, spool.getPendingCount());
+		transport.down = false;
+		awaitSent(spool, 100);
+		spool.append(update("T100"));
+		expected.add("T100");
+		awaitSent(spool, 101);
+		spool.close();
+
+		assertEquals(expected, transport.sent);
+		spool = new UpdateSpool(client, directory, 2048);
+		assertEquals(0, spool.getPendingCount());
+		assertEquals(1, spool.getSegmentCount());
+		spool.close();
+	}
+
+	@Test
+	public void testRecoveryStopsAtCorruptRecord() throws Exception {
+		assertRecoveryStopsAtDamagedRecord((file, record) -> {
+			file.seek(record + 4);
+			file.writeInt(~file.readInt());
+		});
+	}
+
+	@Test
+	public void testRecoveryStopsAtTornRecord() throws Exception {
+		// the length reached the disk, the end of the payload did not
+		assertRecoveryStopsAtDamagedRecord((file, record) -> {
+			file.seek(record);
+			int length = file.readInt();
+			file.seek(record + 9 + length / 2);
+			file.write(new byte[length - length / 2]);
+		});
+	}
+
+	private void assertRecoveryStopsAtDamagedRecord(RecordDamage damage) throws Exception {
+		StubTransport transport = new StubTransport();
+		transport.down = true;
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+
+		UpdateSpool spool = new UpdateSpool(client, directory, 2048);
+		for (int i = 0; i < 3; i++) {
+			spool.append(update("T" + i));
+		}
+		spool.close();
+		List<Path> files = segmentFiles();
+		try (RandomAccessFile file = new RandomAccessFile(files.get(files.size() - 1).toFile(), "rw")) {
+			damage.apply(file, lastRecord(file));
+		}
+
+		spool = new UpdateSpool(client, directory, 2048);
+		assertEquals(2, spool.getPendingCount());
+		spool.append(update("T3"));
+		transport.down = false;
+		awaitSent(spool, 3);
+		spool.close();
+		assertEquals(Arrays.asList("T0", "T1", "T3"), transport.sent);
+	}
+
+	@Test
+	public void testFullySentSegmentsAreDeleted() throws Exception {
+		StubTransport transport = new StubTransport();
+		transport.down = true;
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+
+		UpdateSpool spool = new UpdateSpool(client, directory, 2048);
+		for (int i = 0; i < 150; i++) {
+			spool.append(update("T" + i));
+		}
+		assertTrue(spool.getSegmentCount() > 2, "segments: " + spool.getSegmentCount());
+		assertEquals(spool.getSegmentCount(), segmentFiles().size());
+
+		transport.down = false;
+		awaitSent(spool, 150);
+		for (int i = 0; i < 500 && spool.getSegmentCount() > 1; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, spool.getSegmentCount());
+		assertEquals(1, segmentFiles().size());
+		spool.close();
+	}
+
+	@Test
+	public void testAppendFailsWhenFull() throws Exception {
+		StubTransport transport = new StubTransport();
+		transport.down = true;
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<RisException> failures = new CopyOnWriteArrayList<>();
+
+		UpdateSpool spool = new UpdateSpool(client, directory, 2048);
+		spool.setFailureListener((update, error) -> failures.add(error));
+		spool.setMaxSegments(2);
+		int appended = 0;
+		IOException full = null;
+		while (full == null) {
+			try {
+				spool.append(update("T" + appended));
+				appended++;
+			} catch (IOException e) {
+				full = e;
+			}
+		}
+		assertTrue(full.getMessage().contains("full"), full.getMessage());
+		assertEquals(2, spool.getSegmentCount());
+		assertEquals(appended, spool.getPendingCount());
+		assertFalse(spool.dispatch(update("lost")));
+		assertEquals(1, spool.getFailedCount());
+		assertEquals(1, failures.size());
+
+		// sending makes room again
+		transport.down = false;
+		awaitSent(spool, appended);
+		assertTrue(spool.dispatch(update("late")));
+		awaitSent(spool, appended + 1);
+		spool.close();
+	}
+
+	@Test
+	public void testRecoversPartlySentSegments() throws Exception {
+		StubTransport transport = new StubTransport();
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 150; i++) {
+			expected.add("T" + i);
+		}
+
+		// T50 cannot be sent, the Updates before it are marked sent
+		transport.downAt = "T50";
+		UpdateSpool spool = new UpdateSpool(client, directory, 2048);
+		for (String transactionId : expected) {
+			spool.append(update(transactionId));
+		}
+		awaitSent(spool, 50);
+		spool.close();
+		assertTrue(segmentFiles().size() > 2, "segments: " + segmentFiles().size());
+
+		// every segment left is scanned, its sent Updates are skipped
+		spool = new UpdateSpool(client, directory, 2048);
+		assertEquals(100, spool.getPendingCount());
+		transport.downAt = null;
+		awaitSent(spool, 100);
+		spool.close();
+		assertEquals(expected, transport.sent);
+	}
+
+	@Test
+	public void testErrorResponseReportedAndSkipped() throws Exception {
+		StubTransport transport = new StubTransport();
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<RisException> failures = new CopyOnWriteArrayList<>();
+
+		UpdateSpool spool = new UpdateSpool(client, directory);
+		spool.setFailureListener((update, error) -> failures.add(error));
+		spool.append(update("error"));
+		spool.append(update("T1"));
+		awaitSent(spool, 1);
+		spool.close();
+
+		assertEquals(1, spool.getFailedCount());
+		assertTrue(failures.get(0) instanceof RisResponseException);
+		assertEquals(0, spool.getPendingCount());
+	}
+
+	@Test
+	public void testUnreadableResponseReportedAndSkipped() throws Exception {
+		StubTransport transport = new StubTransport();
+		KountRisClient client = new KountRisClient();
+		client.setTransport(transport);
+		List<RisException> failures = new CopyOnWriteArrayList<>();
+
+		UpdateSpool spool = new UpdateSpool(client, directory);
+		spool.setFailureListener((update, error) -> failures.add(error));
+		spool.append(update("garbled"));
+		spool.append(update("T1"));
+		spool.append(update("T2"));
+		awaitSent(spool, 2);
+		spool.close();
+
+		assertEquals(Arrays.asList("T1", "T2"), transport.sent);
+		assertEquals(1, spool.getFailedCount());
+		assertTrue(failures.get(0) instanceof RisTransportException);
+		assertEquals(0, spool.getPendingCount());
+	}
+
+	@Test
+	public void testDirectoryIsLockedUntilClosed() throws Exception {
+		KountRisClient client = new KountRisClient();
+		client.setTransport(new StubTransport());
+
+		UpdateSpool spool = new UpdateSpool(client, directory);
+		assertThrows(IOException.class, () -> new UpdateSpool(client, directory));
+
+		// replacing the client's spool closes the previous one, unlocking its directory
+		client.setUpdateSpool(spool);
+		client.setUpdateSpool(null);
+		assertThrows(IOException.class, () -> spool.append(update("T1")));
+		UpdateSpool reopened = new UpdateSpool(client, directory);
+		reopened.close();
+	}
+
+	private List<Path> segmentFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "updates-*.spool")) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		files.sort(null);
+		return files;
+	}
+
+	/**
+	 * Offset of the last complete record of a segment file.
+	 */
+	private static long lastRecord(RandomAccessFile file) throws IOException {
+		long position = 0;
+		long last = -1;
+		for (;;) {
+			file.seek(position);
+			int length = file.readInt();
+			if (length <= 0) {
+				return last;
+			}
+			last = position;
+			position += 9 + length;
+		}
+	}
+
+	private interface RecordDamage {
+
+		void apply(RandomAccessFile file, long record) throws IOException;
+	}
+
+	private static void awaitSent(UpdateSpool spool, long count) throws InterruptedException {
+		for (int i = 0; i < 500 && spool.getSentCount() < count; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, spool.getSentCount());
+	}
+
+	private static Update update(String transactionId) {
+		Update update = new Update();
+		update.setTransactionId(transactionId);
+		update.setParm("NOTE", "refund & chargeback = " + transactionId);
+		return update;
+	}
+
+	private static class StubTransport extends Transport {
+
+		final List<String> sent = new CopyOnWriteArrayList<>();
+
+		volatile boolean down;
+
+		volatile String downAt;
+
+		@Override
+		public Response sendRequest(Map<String, String> params) throws RisTransportException {
+			if (down || params.get("TRAN").equals(downAt)) {
+				throw new RisTransportException("RIS is down", new ConnectException("Connection refused"));
+			}
+			String transactionId = params.get("TRAN");
+			if ("garbled".equals(transactionId)) {
+				// such as an HTML page of a proxy
+				throw new RisTransportException("unreadable response");
+			}
+			if (!("refund & chargeback = " + transactionId).equals(params.get("NOTE"))) {
+				throw new IllegalStateException("parameters not restored: " + params);
+			}
+			try {
+				if ("error".equals(transactionId)) {
+					return Response.parseResponse(new StringReader("MODE=E\nERRO=305\nERROR_COUNT=1\nERROR_0=305 BAD_TRAN\n"));
+				}
+				sent.add(transactionId);
+				return Response.parseResponse(new StringReader("MODE=U\nTRAN=" + transactionId + "\n"));
+			} catch (RisResponseException e) {
+				throw new RisTransportException("unreadable response", e);
+			}
+		}
+	}
+}
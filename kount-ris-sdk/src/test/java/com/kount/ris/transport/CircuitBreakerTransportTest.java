@@ -0,0 +1,114 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.FallbackResponse;
+import com.kount.ris.Response;
+import com.kount.ris.util.RisCircuitOpenException;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisThrottledException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTransportTest {
+
+	@Test
+	public void testOpensAndClosesAgain() throws Exception {
+		StubTransport stub = new StubTransport();
+		CircuitBreakerTransport transport = breaker(stub);
+		List<String> transitions = new CopyOnWriteArrayList<>();
+		transport.addStateListener((from, to) -> transitions.add(from + "->" + to));
+
+		stub.respond().respond().fail(connectFailure()).fail(connectFailure());
+		transport.sendRequest(StubTransport.inquiry("S1"));
+		transport.sendRequest(StubTransport.inquiry("S2"));
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry("S3")));
+		assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState());
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry("S4")));
+		assertEquals(CircuitBreakerTransport.State.OPEN, transport.getState());
+
+		// open: nothing is sent
+		assertThrows(RisCircuitOpenException.class, () -> transport.sendRequest(StubTransport.inquiry("S5")));
+		transport.setFallbackAuto("R");
+		Response fallback = transport.sendRequest(StubTransport.inquiry("S6"));
+		assertTrue(fallback instanceof FallbackResponse);
+		assertEquals("R", fallback.getAuto());
+		assertThrows(RisCircuitOpenException.class, () -> transport.sendRequest(StubTransport.update("T1")));
+		assertEquals(4, stub.calls.size());
+
+		Thread.sleep(60);
+		stub.respond();
+		transport.sendRequest(StubTransport.inquiry("S7"));
+		assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState());
+		assertEquals(5, stub.calls.size());
+		assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", transitions.toString());
+	}
+
+	@Test
+	public void testFailedProbeOpensAgain() throws Exception {
+		StubTransport stub = new StubTransport();
+		CircuitBreakerTransport transport = breaker(stub);
+		stub.fail(connectFailure()).fail(connectFailure()).fail(connectFailure());
+		for (int i = 0; i < 2; i++) {
+			assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		}
+		Thread.sleep(60);
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		assertEquals(CircuitBreakerTransport.State.OPEN, transport.getState());
+	}
+
+	@Test
+	public void testFailuresNotCausedByRisAreNotRecorded() throws Exception {
+		StubTransport stub = new StubTransport();
+		CircuitBreakerTransport transport = breaker(stub);
+		stub.fail(new RisThrottledException("RIS is busy", 429, 1000))
+				.fail(new RisOverloadedException("queue is full"))
+				.fail(new RisDeadlineExceededException("No RIS response within the deadline of 100 ms"));
+		for (int i = 0; i < 3; i++) {
+			assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		}
+		for (int i = 0; i < 3; i++) {
+			transport.sendRequestAsync(StubTransport.inquiry(null)).cancel(true);
+		}
+		assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState());
+	}
+
+	@Test
+	public void testCancelledProbeIsHandedOn() throws Exception {
+		StubTransport stub = new StubTransport();
+		CircuitBreakerTransport transport = breaker(stub);
+		stub.fail(connectFailure()).fail(connectFailure());
+		for (int i = 0; i < 2; i++) {
+			assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		}
+		Thread.sleep(60);
+
+		CompletableFuture<Response> probe = transport.sendRequestAsync(StubTransport.inquiry(null));
+		assertEquals(CircuitBreakerTransport.State.HALF_OPEN, transport.getState());
+		assertThrows(RisCircuitOpenException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		probe.cancel(true);
+
+		stub.respond();
+		transport.sendRequest(StubTransport.inquiry(null));
+		assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState());
+	}
+
+	private static CircuitBreakerTransport breaker(StubTransport stub) {
+		CircuitBreakerTransport transport = new CircuitBreakerTransport(stub, 4, 2);
+		transport.setOpenDuration(50);
+		transport.setHalfOpenCalls(1);
+		return transport;
+	}
+
+	private static RisTransportException connectFailure() {
+		return new RisTransportException("An error occurred while sending the RIS request", new ConnectException("refused"));
+	}
+}
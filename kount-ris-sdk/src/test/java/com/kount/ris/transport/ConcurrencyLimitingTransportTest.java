@@ -0,0 +1,139 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimitingTransportTest {
+
+	@Test
+	public void testQueueAndReject() throws Exception {
+		StubTransport stub = new StubTransport();
+		ConcurrencyLimitingTransport transport = new ConcurrencyLimitingTransport(stub, 1);
+		transport.setLimitBounds(1, 1);
+		transport.setMaxQueueSize(1);
+
+		CompletableFuture<Response> first = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> queued = transport.sendRequestAsync(StubTransport.inquiry("S2"));
+		assertTrue(transport.isOverloaded());
+		assertEquals(1, transport.getQueueLength());
+		assertEquals(1, stub.calls.size());
+
+		CompletableFuture<Response> full = transport.sendRequestAsync(StubTransport.inquiry("S3"));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> full.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisOverloadedException);
+
+		stub.call(0).respond();
+		assertNotNull(first.get(5, TimeUnit.SECONDS));
+		assertEquals(2, stub.calls.size());
+		assertEquals(0, transport.getQueueLength());
+		stub.call(1).respond();
+		assertNotNull(queued.get(5, TimeUnit.SECONDS));
+		assertEquals(0, transport.getInFlight());
+		assertEquals(1, transport.getRejectedCount());
+	}
+
+	@Test
+	public void testQueuedRequestSpendsItsBudget() throws Exception {
+		StubTransport stub = new StubTransport();
+		ConcurrencyLimitingTransport transport = new ConcurrencyLimitingTransport(stub, 1);
+		transport.setLimitBounds(1, 1);
+
+		CompletableFuture<Response> first = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> queued = transport.sendRequestAsync(StubTransport.inquiry("S2"), Duration.ofMillis(20));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisDeadlineExceededException);
+		assertEquals(0, transport.getQueueLength());
+
+		// the permit goes to the next request, which is sent with what is left of its budget
+		CompletableFuture<Response> next = transport.sendRequestAsync(StubTransport.inquiry("S3"), Duration.ofSeconds(5));
+		stub.call(0).respond();
+		assertNotNull(first.get(5, TimeUnit.SECONDS));
+		assertEquals(2, stub.calls.size());
+		assertEquals("S3", stub.call(1).params.get("SESS"));
+		assertTrue(stub.call(1).timeout.compareTo(Duration.ofSeconds(5)) < 0);
+		stub.call(1).respond();
+		assertNotNull(next.get(5, TimeUnit.SECONDS));
+		assertEquals(0, transport.getInFlight());
+		assertEquals(0, transport.getRejectedCount());
+	}
+
+	@Test
+	public void testQueueWaitRunsOut() throws Exception {
+		StubTransport stub = new StubTransport();
+		ConcurrencyLimitingTransport transport = new ConcurrencyLimitingTransport(stub, 1);
+		transport.setLimitBounds(1, 1);
+		transport.setMaxQueueWait(20);
+
+		transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> queued = transport.sendRequestAsync(StubTransport.inquiry("S2"));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisOverloadedException);
+		assertEquals(0, transport.getQueueLength());
+
+		// a cancelled waiter gives up its place
+		CompletableFuture<Response> cancelled = transport.sendRequestAsync(StubTransport.inquiry("S3"));
+		cancelled.cancel(true);
+		assertEquals(0, transport.getQueueLength());
+		stub.call(0).respond();
+		assertEquals(1, stub.calls.size());
+		assertEquals(0, transport.getInFlight());
+	}
+
+	@Test
+	public void testLimitAdapts() throws Exception {
+		StubTransport stub = new StubTransport();
+		ConcurrencyLimitingTransport transport = new ConcurrencyLimitingTransport(stub, 2);
+		transport.setLimitBounds(1, 10);
+		// the stub answers at once, keep scheduling jitter from counting as congestion
+		transport.setRttTolerance(1e9);
+
+		// additive increase, by 1/limit per request while half of the limit is in use
+		for (int round = 0; round < 10; round++) {
+			List<CompletableFuture<Response>> results = new ArrayList<>();
+			for (int i = transport.getLimit(); i > 0; i--) {
+				results.add(transport.sendRequestAsync(StubTransport.inquiry(null)));
+			}
+			assertTrue(transport.isOverloaded());
+			for (StubTransport.Call call : stub.calls) {
+				call.respond();
+			}
+			for (CompletableFuture<Response> result : results) {
+				result.get(5, TimeUnit.SECONDS);
+			}
+		}
+		int raised = transport.getLimit();
+		assertTrue(raised >= 4, "limit " + raised);
+
+		// multiplicative decrease, by 10% per timeout
+		for (int i = 0; i < 3; i++) {
+			stub.fail(new RisTransportException("An error occurred while sending the RIS request",
+					new SocketTimeoutException("read timed out")));
+			assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		}
+		int lowered = transport.getLimit();
+		assertTrue(lowered < raised, "limit " + lowered);
+
+		// local rejections are not a sign of congestion
+		stub.fail(new RisOverloadedException("queue is full"));
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		assertEquals(lowered, transport.getLimit());
+		assertFalse(transport.isOverloaded());
+	}
+}
@@ -0,0 +1,64 @@
+package com.kount.ris.transport;
+
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.net.WWWFormCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FormUrlEncoderTest {
+
+	@Test
+	public void testMatchesFormCodec() throws IOException {
+		Map<String, String> params = new LinkedHashMap<>();
+		params.put("MERC", "999666");
+		params.put("PROD_DESC[0]", "3000 CANDLEPOWER PLASMA FLASHLIGHT & co.");
+		params.put("NAME", "Gérard Ø'Brien-Smith_*~");
+		params.put("B2A1", "東京都 1-2");
+		params.put("EMAL", "emoji😀@example.com");
+		params.put("LONE", "a\uD800b\uDC00c");
+		params.put("EMPTY", "");
+		params.put("NULL", null);
+
+		assertEncoding(params, FormUrlEncoder.UTF_8, StandardCharsets.UTF_8);
+		assertEncoding(params, FormUrlEncoder.ISO_8859_1, StandardCharsets.ISO_8859_1);
+	}
+
+	@Test
+	public void testWriteLargerThanBuffer() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			value.append(i % 3 == 0 ? "é" : i % 3 == 1 ? "😀" : "a b");
+		}
+		Map<String, String> params = new LinkedHashMap<>();
+		params.put("LONG", value.toString());
+		params.put("SESS", "abc");
+
+		assertEncoding(params, FormUrlEncoder.UTF_8, StandardCharsets.UTF_8);
+	}
+
+	private static void assertEncoding(Map<String, String> params, FormUrlEncoder encoder, Charset charset)
+			throws IOException {
+		BasicNameValuePair[] pairs = new BasicNameValuePair[params.size()];
+		int i = 0;
+		for (Map.Entry<String, String> entry : params.entrySet()) {
+			pairs[i++] = new BasicNameValuePair(entry.getKey(), entry.getValue());
+		}
+		byte[] expected = WWWFormCodec.format(java.util.Arrays.asList(pairs), charset).getBytes(StandardCharsets.US_ASCII);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.writeTo(params, out);
+
+		assertEquals(expected.length, encoder.encodedLength(params));
+		assertArrayEquals(expected, encoder.encode(params));
+		assertArrayEquals(expected, out.toByteArray());
+	}
+}
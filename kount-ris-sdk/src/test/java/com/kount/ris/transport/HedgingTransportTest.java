@@ -0,0 +1,122 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingTransportTest {
+
+	@Test
+	public void testHedgeWinsAndFirstAttemptIsCancelled() throws Exception {
+		StubTransport stub = new StubTransport();
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(20);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		stub.awaitCalls(2);
+		assertEquals("S1", stub.call(1).params.get("SESS"));
+		stub.call(1).respond();
+
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+		assertTrue(stub.call(0).future.isCancelled());
+		assertEquals(1, transport.getHedgeCount());
+		assertEquals(1, transport.getHedgeWinCount());
+	}
+
+	@Test
+	public void testAttemptsShareTheTimeBudget() throws Exception {
+		StubTransport stub = new StubTransport();
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(20);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S1"), Duration.ofSeconds(5));
+		stub.awaitCalls(2);
+		assertTrue(stub.call(0).timeout.compareTo(Duration.ofSeconds(5)) <= 0);
+		assertTrue(stub.call(1).timeout.compareTo(stub.call(0).timeout) < 0);
+		stub.call(0).respond();
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testDeadlineDuringSendCancelsAttempt() throws Exception {
+		StubTransport stub = new StubTransport() {
+			@Override
+			public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+				CompletableFuture<Response> sent = super.sendRequestAsync(params, timeout);
+				// slow to hand back its future, the deadline fires meanwhile
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return sent;
+			}
+		};
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(20);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S1"), Duration.ofMillis(10));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisDeadlineExceededException);
+		assertTrue(stub.call(0).future.isCancelled());
+		Thread.sleep(50);
+		assertEquals(1, stub.calls.size());
+	}
+
+	@Test
+	public void testFirstAttemptWinsAndHedgeIsCancelled() throws Exception {
+		StubTransport stub = new StubTransport();
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(20);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		stub.awaitCalls(2);
+		stub.call(0).respond();
+
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+		assertTrue(stub.call(1).future.isCancelled());
+		assertEquals(1, transport.getHedgeCount());
+		assertEquals(0, transport.getHedgeWinCount());
+	}
+
+	@Test
+	public void testNoHedgeWhenAnsweredInTime() throws Exception {
+		StubTransport stub = new StubTransport();
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(50);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		stub.call(0).respond();
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+
+		assertEquals(1, stub.calls.size());
+		assertEquals(0, transport.getHedgeCount());
+	}
+
+	@Test
+	public void testUpdatesAreNotHedged() throws Exception {
+		StubTransport stub = new StubTransport();
+		HedgingTransport transport = new HedgingTransport(stub);
+		transport.setHedgeDelay(0);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.update("T1"));
+		Thread.sleep(50);
+		assertEquals(1, stub.calls.size());
+		assertFalse(result.isDone());
+		stub.call(0).respond();
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+	}
+}
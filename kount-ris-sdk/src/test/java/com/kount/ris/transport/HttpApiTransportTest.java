@@ -0,0 +1,242 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Inquiry;
+import com.kount.ris.KountRisClient;
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpApiTransportTest {
+
+	/**
+	 * Accepts connections and reads nothing, never answering.
+	 */
+	private ServerSocket server;
+
+	private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+	private URL url;
+
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/");
+		Thread acceptor = new Thread(() -> {
+			try {
+				while (true) {
+					accepted.add(server.accept());
+				}
+			} catch (IOException e) {
+				// closed
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+		for (Socket socket : accepted) {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testDeadlineAbortsBlockingRequest() throws Exception {
+		KountRisClient client = new KountRisClient(url, "key");
+		HttpApiTransport transport = (HttpApiTransport) client.getTransport();
+		try {
+			// connected ahead, so the budget is spent waiting for the response
+			assertEquals(1, transport.warmUp(1));
+			assertThrows(RisDeadlineExceededException.class, () -> client.process(new Inquiry(), Duration.ofMillis(500)));
+			assertEquals(1, accepted.size());
+			assertEquals(0, transport.getPoolStats().getLeased());
+			assertEquals(1, transport.getAbortedCount());
+		} finally {
+			transport.close();
+		}
+	}
+
+	@Test
+	public void testDeadlineAbortsAsyncRequest() throws Exception {
+		HttpApiTransport transport = new HttpApiTransport(url, "key");
+		try {
+			CompletableFuture<Response> result = transport.sendRequestAsync(new Inquiry().getParams(), Duration.ofMillis(500));
+			ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof RisDeadlineExceededException);
+			awaitNoLeased(transport::getAsyncPoolStats);
+			assertEquals(1, transport.getAbortedCount());
+		} finally {
+			transport.close();
+		}
+	}
+
+	@Test
+	public void testCancelAbortsAsyncRequest() throws Exception {
+		HttpApiTransport transport = new HttpApiTransport(url, "key");
+		try {
+			CompletableFuture<Response> result = transport.sendRequestAsync(new Inquiry().getParams());
+			// the connection is leased before it is connected, wait for the exchange to be in flight
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (accepted.isEmpty() && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(1, transport.getAsyncPoolStats().getLeased());
+
+			assertTrue(result.cancel(true));
+			awaitNoLeased(transport::getAsyncPoolStats);
+			assertEquals(1, transport.getAbortedCount());
+			assertEquals(1, accepted.size());
+		} finally {
+			transport.close();
+		}
+	}
+
+	@Test
+	public void testHttp2ModeRoutesBlockingRequestsToAsyncClient() throws Exception {
+		HttpServer ris = httpServer();
+		ris.createContext("/", exchange -> answer(exchange, 200, "MODE=Q\nAUTO=A\n"));
+		ris.start();
+		HttpApiTransport http1 = new HttpApiTransport(url(ris), "key");
+		HttpApiTransport http2 = new HttpApiTransport(url(ris), "key");
+		try {
+			assertEquals("A", http1.sendRequest(new Inquiry().getParams()).getAuto());
+			assertEquals(1, http1.getPoolStats().getAvailable());
+			assertNull(http1.getAsyncPoolStats());
+
+			http2.setHttp2Enabled(true);
+			assertEquals("A", http2.sendRequest(new Inquiry().getParams()).getAuto());
+			PoolStats blocking = http2.getPoolStats();
+			assertEquals(0, blocking.getAvailable() + blocking.getLeased());
+			assertNotNull(http2.getAsyncPoolStats());
+
+			// the protocol is fixed once the non-blocking client exists
+			http2.setHttp2Enabled(false);
+			assertTrue(http2.isHttp2Enabled());
+		} finally {
+			http1.close();
+			http2.close();
+			ris.stop(0);
+		}
+	}
+
+	@Test
+	public void testBackgroundTokenRefresh() throws Exception {
+		List<Long> tokenRequests = new CopyOnWriteArrayList<>();
+		List<String> authorizations = new CopyOnWriteArrayList<>();
+		AtomicBoolean authDown = new AtomicBoolean();
+		HttpServer server = httpServer();
+		server.createContext("/token", exchange -> {
+			tokenRequests.add(System.nanoTime());
+			if (authDown.get()) {
+				answer(exchange, 500, "down");
+			} else {
+				// valid for about 2 s after the latency buffers of the SDK
+				answer(exchange, 200, "{\"access_token\":\"t" + tokenRequests.size() + "\",\"token_type\":\"Bearer\",\"expires_in\":183}");
+			}
+		});
+		server.createContext("/ris", exchange -> {
+			authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+			answer(exchange, 200, "MODE=Q\nAUTO=A\n");
+		});
+		server.start();
+		String base = url(server).toString();
+		HttpApiTransport transport = new HttpApiTransport(url(server), "key", true, "pf-key", "client", base + "ris", base + "token", false);
+		transport.tokenRefreshMinDelayMs = 100;
+		transport.tokenRefreshMinRetryMs = 50;
+		try {
+			// the first token is fetched by the caller
+			transport.sendRequest(new Inquiry().getParams());
+			assertEquals("Bearer t1", authorizations.get(0));
+
+			// renewed in the background, halfway through its life
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (!"t2".equals(transport.getBearerResponse().getAccessToken()) && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(2, tokenRequests.size());
+			assertTrue(tokenRequests.get(1) - tokenRequests.get(0) < TimeUnit.SECONDS.toNanos(2));
+			transport.sendRequest(new Inquiry().getParams());
+			assertEquals("Bearer t2", authorizations.get(1));
+			assertEquals(2, tokenRequests.size());
+
+			// a failed refresh is retried with backoff, and the still valid token is used meanwhile
+			authDown.set(true);
+			awaitSize(tokenRequests, 5);
+			transport.sendRequest(new Inquiry().getParams());
+			assertEquals("Bearer t2", authorizations.get(2));
+			long firstRetry = TimeUnit.NANOSECONDS.toMillis(tokenRequests.get(3) - tokenRequests.get(2));
+			long secondRetry = TimeUnit.NANOSECONDS.toMillis(tokenRequests.get(4) - tokenRequests.get(3));
+			assertTrue(firstRetry >= 50, "first retry after " + firstRetry + " ms");
+			assertTrue(secondRetry >= 100, "second retry after " + secondRetry + " ms");
+		} finally {
+			transport.close();
+			server.stop(0);
+		}
+	}
+
+	private static void awaitSize(List<?> list, int size) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (list.size() < size && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(list.size() >= size, "expected " + size + ", got " + list.size());
+	}
+
+	static HttpServer httpServer() throws IOException {
+		return HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+	}
+
+	static URL url(HttpServer server) throws IOException {
+		return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+	}
+
+	static void answer(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getRequestBody().close();
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * The non-blocking pool takes the aborted connection back on an I/O thread.
+	 */
+	static void awaitNoLeased(Supplier<PoolStats> stats) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (stats.get().getLeased() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, stats.get().getLeased());
+	}
+}
@@ -0,0 +1,225 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisThrottledException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultiEndpointTransportTest {
+
+	@Test
+	public void testFailsOverOnlyWhenNotSent() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+
+		first.fail(connectFailure());
+		second.respond();
+		assertNotNull(transport.sendRequest(StubTransport.inquiry("S1")));
+		assertEquals(1, first.calls.size());
+		assertEquals(1, second.calls.size());
+
+		first.fail(connectFailure());
+		second.respond();
+		assertNotNull(transport.sendRequestAsync(StubTransport.inquiry("S2")).get(5, TimeUnit.SECONDS));
+		assertEquals(2, second.calls.size());
+
+		// RIS may have processed it, so it is not resent
+		first.fail(readTimeout());
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry("S3"));
+		assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertEquals(2, second.calls.size());
+	}
+
+	@Test
+	public void testFailoverSpendsTheTimeBudget() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+
+		first.fail(connectFailure());
+		second.respond();
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null), Duration.ofSeconds(5)));
+		assertTrue(first.call(0).timeout.compareTo(Duration.ofSeconds(5)) <= 0);
+		assertTrue(second.call(0).timeout.compareTo(first.call(0).timeout) < 0);
+	}
+
+	@Test
+	public void testEjectsAndProbes() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+		transport.setEjectAfterFailures(2);
+		transport.setProbeInterval(10);
+		AtomicInteger probes = new AtomicInteger();
+		transport.setEndpointProbe(endpoint -> {
+			if (probes.incrementAndGet() < 3) {
+				throw new RisTransportException("still down");
+			}
+		});
+
+		for (int i = 0; i < 2; i++) {
+			first.fail(connectFailure());
+			second.respond();
+			transport.sendRequest(StubTransport.inquiry(null));
+		}
+		assertTrue(transport.getEndpointStatus().get(0).isEjected());
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (transport.getEndpointStatus().get(0).isEjected() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertFalse(transport.getEndpointStatus().get(0).isEjected());
+		assertEquals(3, probes.get());
+	}
+
+	@Test
+	public void testEndpointWithoutProbeReturnsAfterSuccess() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+		transport.setEjectAfterFailures(1);
+		transport.setProbeInterval(5);
+
+		first.fail(connectFailure());
+		second.fail(connectFailure());
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		Thread.sleep(50);
+		assertTrue(transport.getEndpointStatus().get(0).isEjected());
+		assertTrue(transport.getEndpointStatus().get(1).isEjected());
+
+		// every endpoint is ejected, so the request goes to one of them anyway
+		first.respond();
+		second.respond();
+		transport.sendRequest(StubTransport.inquiry(null));
+		assertFalse(transport.getEndpointStatus().get(0).isEjected());
+	}
+
+	@Test
+	public void testCancellationIsNotAFailure() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+		transport.setEjectAfterFailures(1);
+
+		transport.sendRequestAsync(StubTransport.inquiry(null)).cancel(true);
+		assertTrue(first.call(0).future.isCancelled());
+		assertFalse(transport.getEndpointStatus().get(0).isEjected());
+		assertEquals(0, second.calls.size());
+
+		// not counted as in flight any more, so it is picked again
+		first.respond();
+		transport.sendRequest(StubTransport.inquiry(null));
+		assertEquals(2, first.calls.size());
+	}
+
+	@Test
+	public void testCallerDeadlineIsNotAFailure() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+		transport.setEjectAfterFailures(1);
+
+		first.fail(new RisDeadlineExceededException("No RIS response within the deadline of 10 ms"));
+		assertThrows(RisDeadlineExceededException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		assertFalse(transport.getEndpointStatus().get(0).isEjected());
+
+		first.respond();
+		transport.sendRequest(StubTransport.inquiry(null));
+		assertEquals(2, first.calls.size());
+		assertEquals(0, second.calls.size());
+	}
+
+	@Test
+	public void testThrottlingIsNotAFailure() throws Exception {
+		StubTransport first = new StubTransport();
+		StubTransport second = new StubTransport();
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first, second));
+		transport.setEjectAfterFailures(1);
+
+		// not processed, so it fails over, but the endpoint stays in rotation
+		first.fail(new RisThrottledException("RIS answered 429", 429, -1));
+		second.respond();
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null)));
+		assertEquals(1, second.calls.size());
+		assertFalse(transport.getEndpointStatus().get(0).isEjected());
+	}
+
+	@Test
+	public void testHttpProbeOpensNewConnection() throws Exception {
+		AtomicInteger accepted = new AtomicInteger();
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			int port = server.getLocalPort();
+			Thread acceptor = new Thread(() -> {
+				try {
+					while (true) {
+						server.accept();
+						accepted.incrementAndGet();
+					}
+				} catch (IOException e) {
+					// closed
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			HttpApiTransport http = new HttpApiTransport(new URL("http://127.0.0.1:" + port + "/"), "key");
+			http.warmUp(1);
+			// the pooled connection proves nothing about the endpoint now
+			http.probe();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (accepted.get() < 2 && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(2, accepted.get());
+			http.close();
+		}
+
+		// a bound socket that never listens holds the port, so connecting is refused
+		try (Socket unused = new Socket()) {
+			unused.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			HttpApiTransport http = new HttpApiTransport(new URL("http://127.0.0.1:" + unused.getLocalPort() + "/"), "key");
+			assertThrows(RisTransportException.class, http::probe);
+			http.close();
+		}
+	}
+
+	@Test
+	public void testRisServerUrlIsIgnored() {
+		StubTransport first = new StubTransport();
+		first.setRisServerUrl("https://risk.example.com");
+		MultiEndpointTransport transport = new MultiEndpointTransport(Arrays.asList(first));
+		transport.setRisServerUrl("https://elsewhere.example.com");
+		assertEquals("https://risk.example.com", transport.getEndpointStatus().get(0).getTransport().risServerUrl);
+	}
+
+	private static RisTransportException connectFailure() {
+		return new RisTransportException("An error occurred while sending the RIS request", new ConnectException("refused"));
+	}
+
+	private static RisTransportException readTimeout() {
+		return new RisTransportException("An error occurred while sending the RIS request", new SocketTimeoutException("read timed out"));
+	}
+}
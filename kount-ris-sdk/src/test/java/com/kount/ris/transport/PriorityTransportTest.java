@@ -0,0 +1,92 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriorityTransportTest {
+
+	@Test
+	public void testInquiriesGetFreedPermitsFirst() throws Exception {
+		StubTransport stub = new StubTransport();
+		PriorityTransport transport = new PriorityTransport(stub, 2, 1);
+
+		CompletableFuture<Response> update1 = transport.sendRequestAsync(StubTransport.update("T1"));
+		CompletableFuture<Response> update2 = transport.sendRequestAsync(StubTransport.update("T2"));
+		CompletableFuture<Response> inquiry1 = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		// Updates are held at their limit, the rest of the capacity is kept for Inquiries
+		assertEquals(2, stub.calls.size());
+		assertEquals(1, transport.getQueueLength(RequestClass.UPDATE));
+
+		CompletableFuture<Response> inquiry2 = transport.sendRequestAsync(StubTransport.inquiry("S2"));
+		assertEquals(1, transport.getQueueLength(RequestClass.INQUIRY));
+
+		// the Update finishing frees the Update permit, but the waiting Inquiry goes first
+		stub.call(0).respond();
+		assertNotNull(update1.get(5, TimeUnit.SECONDS));
+		assertEquals(3, stub.calls.size());
+		assertEquals("S2", stub.call(2).params.get("SESS"));
+		assertEquals(1, transport.getQueueLength(RequestClass.UPDATE));
+
+		stub.call(1).respond();
+		assertNotNull(inquiry1.get(5, TimeUnit.SECONDS));
+		assertEquals(4, stub.calls.size());
+		assertEquals("T2", stub.call(3).params.get("TRAN"));
+
+		stub.call(2).respond();
+		stub.call(3).respond();
+		assertNotNull(inquiry2.get(5, TimeUnit.SECONDS));
+		assertNotNull(update2.get(5, TimeUnit.SECONDS));
+		assertEquals(0, transport.getInFlight(RequestClass.INQUIRY));
+		assertEquals(0, transport.getInFlight(RequestClass.UPDATE));
+	}
+
+	@Test
+	public void testQueuedRequestSpendsItsBudget() throws Exception {
+		StubTransport stub = new StubTransport();
+		PriorityTransport transport = new PriorityTransport(stub, 1, 1);
+
+		CompletableFuture<Response> first = transport.sendRequestAsync(StubTransport.inquiry("S1"), Duration.ofSeconds(5));
+		assertTrue(stub.call(0).timeout.compareTo(Duration.ofSeconds(5)) <= 0);
+		CompletableFuture<Response> queued = transport.sendRequestAsync(StubTransport.inquiry("S2"), Duration.ofMillis(20));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisDeadlineExceededException);
+		assertEquals(0, transport.getQueueLength(RequestClass.INQUIRY));
+
+		stub.call(0).respond();
+		assertNotNull(first.get(5, TimeUnit.SECONDS));
+		assertEquals(1, stub.calls.size());
+		assertEquals(0, transport.getInFlight(RequestClass.INQUIRY));
+	}
+
+	@Test
+	public void testLaneLimits() throws Exception {
+		StubTransport stub = new StubTransport();
+		PriorityTransport transport = new PriorityTransport(stub, 1, 1);
+		transport.setMaxQueueSize(RequestClass.UPDATE, 0);
+		transport.setMaxQueueWait(RequestClass.INQUIRY, 20);
+
+		transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> update = transport.sendRequestAsync(StubTransport.update("T1"));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> update.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisOverloadedException);
+
+		CompletableFuture<Response> inquiry = transport.sendRequestAsync(StubTransport.inquiry("S2"));
+		e = assertThrows(ExecutionException.class, () -> inquiry.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisOverloadedException);
+		assertEquals(0, transport.getQueueLength(RequestClass.INQUIRY));
+		assertEquals(1, stub.calls.size());
+		assertEquals(2, transport.getRejectedCount());
+	}
+}
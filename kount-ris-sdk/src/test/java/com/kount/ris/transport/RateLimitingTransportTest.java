@@ -0,0 +1,110 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisThrottledException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitingTransportTest {
+
+	@Test
+	public void testPacesEachMerchant() throws Exception {
+		StubTransport stub = new StubTransport();
+		RateLimitingTransport transport = new RateLimitingTransport(stub, 20);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			stub.respond();
+			transport.sendRequest(StubTransport.inquiry(null));
+		}
+		// 50 ms between requests at 20 per second
+		assertTrue(elapsedMillis(start) >= 90, "elapsed " + elapsedMillis(start));
+
+		start = System.nanoTime();
+		stub.respond();
+		transport.sendRequest(merchant("111222"));
+		assertTrue(elapsedMillis(start) < 40, "elapsed " + elapsedMillis(start));
+	}
+
+	@Test
+	public void testRetryAfterPausesAndHalvesRate() throws Exception {
+		StubTransport stub = new StubTransport();
+		RateLimitingTransport transport = new RateLimitingTransport(stub, 100);
+		stub.fail(new RisThrottledException("RIS answered 429", 429, 100)).respond();
+
+		long start = System.nanoTime();
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null)));
+		assertTrue(elapsedMillis(start) >= 90, "elapsed " + elapsedMillis(start));
+		assertEquals(2, stub.calls.size());
+		assertEquals(1, transport.getThrottledCount());
+		// halved, then 2% of the configured rate regained by the successful response
+		assertEquals(52, transport.getRate("999666"), 0.001);
+	}
+
+	@Test
+	public void testAsyncThrottledRequestIsQueuedAgain() throws Exception {
+		StubTransport stub = new StubTransport();
+		RateLimitingTransport transport = new RateLimitingTransport(stub, 100);
+		stub.fail(new RisThrottledException("RIS answered 503", 503, 50)).respond();
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry(null));
+		assertNotNull(result.get(5, TimeUnit.SECONDS));
+		assertEquals(2, stub.calls.size());
+	}
+
+	@Test
+	public void testRejectsBeyondMaxWait() throws Exception {
+		StubTransport stub = new StubTransport();
+		RateLimitingTransport transport = new RateLimitingTransport(stub, 1);
+		transport.setMaxWait(100);
+
+		stub.respond();
+		transport.sendRequest(StubTransport.inquiry(null));
+		assertThrows(RisOverloadedException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry(null));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof RisOverloadedException);
+		assertEquals(1, stub.calls.size());
+		assertEquals(2, transport.getRejectedCount());
+	}
+
+	@Test
+	public void testWaitWithinTheBudget() throws Exception {
+		StubTransport stub = new StubTransport();
+		RateLimitingTransport transport = new RateLimitingTransport(stub, 10);
+
+		stub.respond().respond();
+		transport.sendRequest(StubTransport.inquiry(null), Duration.ofSeconds(5));
+		// the 100 ms wait for the next slot is taken from the budget
+		transport.sendRequest(StubTransport.inquiry(null), Duration.ofSeconds(5));
+		assertTrue(stub.call(1).timeout.compareTo(Duration.ofMillis(4950)) < 0, "timeout " + stub.call(1).timeout);
+
+		// a budget ending before the next slot fails the request without sending it
+		assertThrows(RisDeadlineExceededException.class, () -> transport.sendRequest(StubTransport.inquiry(null), Duration.ofMillis(20)));
+		assertEquals(2, stub.calls.size());
+		assertEquals(0, transport.getRejectedCount());
+	}
+
+	private static Map<String, String> merchant(String merchantId) {
+		Map<String, String> params = StubTransport.inquiry(null);
+		params.put("MERC", merchantId);
+		return params;
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+}
@@ -0,0 +1,134 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryingTransportTest {
+
+	@Test
+	public void testConnectFailureIsRetried() throws Exception {
+		StubTransport stub = new StubTransport().fail(connectFailure()).respond();
+		RetryingTransport transport = retrying(stub);
+
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null)));
+		assertEquals(2, stub.calls.size());
+		assertEquals(1, transport.getRetryCount());
+	}
+
+	@Test
+	public void testReadTimeoutIsRetriedOnlyWhenIdempotent() throws Exception {
+		// an Update with its TRAN and an Inquiry with its SESS are recognised by RIS
+		StubTransport update = new StubTransport().fail(readTimeout()).respond();
+		assertNotNull(retrying(update).sendRequest(StubTransport.update("T1")));
+		assertEquals(2, update.calls.size());
+
+		StubTransport inquiry = new StubTransport().fail(readTimeout()).respond();
+		assertNotNull(retrying(inquiry).sendRequest(StubTransport.inquiry("S1")));
+		assertEquals(2, inquiry.calls.size());
+
+		StubTransport newUpdate = new StubTransport().fail(readTimeout()).respond();
+		assertThrows(RisTransportException.class, () -> retrying(newUpdate).sendRequest(StubTransport.update(null)));
+		assertEquals(1, newUpdate.calls.size());
+
+		StubTransport newInquiry = new StubTransport().fail(readTimeout()).respond();
+		assertThrows(RisTransportException.class, () -> retrying(newInquiry).sendRequest(StubTransport.inquiry(null)));
+		assertEquals(1, newInquiry.calls.size());
+	}
+
+	@Test
+	public void testAsyncRetryGivesUpAfterMaxAttempts() throws Exception {
+		RisTransportException last = connectFailure();
+		StubTransport stub = new StubTransport().fail(connectFailure()).fail(connectFailure()).fail(last).respond();
+		RetryingTransport transport = retrying(stub);
+
+		CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.update("T1"));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertSame(last, e.getCause());
+		assertEquals(RetryingTransport.DEFAULT_MAX_ATTEMPTS, stub.calls.size());
+		assertEquals(2, transport.getRetryCount());
+	}
+
+	@Test
+	public void testBudgetDeniesRetries() throws Exception {
+		StubTransport stub = new StubTransport();
+		RetryingTransport transport = retrying(stub);
+		transport.setMaxAttempts(2);
+		transport.setRetryBudgetRatio(0);
+
+		// the budget starts with 10 retries and earns nothing
+		for (int i = 0; i < 11; i++) {
+			stub.fail(connectFailure()).fail(connectFailure());
+			assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry(null)));
+		}
+		assertEquals(10, transport.getRetryCount());
+		assertEquals(1, transport.getRetriesDeniedCount());
+	}
+
+	@Test
+	public void testRetriesShareTheTimeBudget() throws Exception {
+		StubTransport stub = new StubTransport().fail(connectFailure()).respond();
+		RetryingTransport transport = retrying(stub);
+		transport.setBackoff(10, 10);
+
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null), Duration.ofSeconds(5)));
+		assertEquals(2, stub.calls.size());
+		assertTrue(stub.call(0).timeout.compareTo(Duration.ofSeconds(5)) <= 0);
+		assertTrue(stub.call(1).timeout.compareTo(stub.call(0).timeout) < 0);
+
+		// no retry whose backoff would outlast the budget
+		RisTransportException failure = connectFailure();
+		StubTransport slow = new StubTransport().fail(failure).respond();
+		RetryingTransport slowRetries = retrying(slow);
+		slowRetries.setBackoff(TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(1));
+		CompletableFuture<Response> result = slowRetries.sendRequestAsync(StubTransport.inquiry(null), Duration.ofSeconds(1));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertSame(failure, e.getCause());
+		assertEquals(1, slow.calls.size());
+		assertEquals(0, slowRetries.getRetryCount());
+	}
+
+	@Test
+	public void testBackoff() {
+		RetryingTransport transport = new RetryingTransport(new StubTransport());
+		transport.setBackoff(10, 35);
+		long[] caps = {10, 20, 35, 35};
+		for (int attempt = 1; attempt <= caps.length; attempt++) {
+			long highest = 0;
+			for (int i = 0; i < 1000; i++) {
+				long backoff = transport.backoffMs(attempt);
+				assertTrue(backoff >= 0 && backoff <= caps[attempt - 1], "backoff " + backoff + " of attempt " + attempt);
+				highest = Math.max(highest, backoff);
+			}
+			// full jitter covers the whole range
+			assertTrue(highest >= caps[attempt - 1] / 2);
+		}
+	}
+
+	private static RetryingTransport retrying(StubTransport stub) {
+		RetryingTransport transport = new RetryingTransport(stub);
+		transport.setBackoff(0, 0);
+		return transport;
+	}
+
+	private static RisTransportException connectFailure() {
+		return new RisTransportException("An error occurred while sending the RIS request", new ConnectException("refused"));
+	}
+
+	private static RisTransportException readTimeout() {
+		return new RisTransportException("An error occurred while sending the RIS request", new SocketTimeoutException("read timed out"));
+	}
+}
@@ -0,0 +1,104 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTransportTest {
+
+	@Test
+	public void testIdenticalInquiriesShareOneRequest() throws Exception {
+		StubTransport stub = new StubTransport();
+		SingleFlightTransport transport = new SingleFlightTransport(stub);
+
+		CompletableFuture<Response> first = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> second = transport.sendRequestAsync(StubTransport.inquiry("S1"));
+		CompletableFuture<Response> other = transport.sendRequestAsync(StubTransport.inquiry("S2"));
+		assertEquals(2, stub.calls.size());
+
+		// one caller giving up does not cancel the shared request
+		first.cancel(true);
+		assertFalse(stub.call(0).future.isCancelled());
+		stub.call(0).respond();
+		stub.call(1).respond();
+		assertSame(stub.call(0).future.get(), second.get(5, TimeUnit.SECONDS));
+		other.get(5, TimeUnit.SECONDS);
+		assertEquals(1, transport.getSharedCount());
+	}
+
+	@Test
+	public void testJoinerWaitsNoLongerThanItsBudget() throws Exception {
+		StubTransport stub = new StubTransport();
+		SingleFlightTransport transport = new SingleFlightTransport(stub);
+
+		CompletableFuture<Response> owner = transport.sendRequestAsync(StubTransport.inquiry("S1"), Duration.ofSeconds(5));
+		assertTrue(stub.call(0).timeout.compareTo(Duration.ofSeconds(5)) <= 0);
+		assertThrows(RisDeadlineExceededException.class, () -> transport.sendRequest(StubTransport.inquiry("S1"), Duration.ofMillis(20)));
+		assertFalse(stub.call(0).future.isDone());
+
+		stub.call(0).respond();
+		assertNotNull(owner.get(5, TimeUnit.SECONDS));
+		assertEquals(1, stub.calls.size());
+		assertEquals(1, transport.getSharedCount());
+	}
+
+	@Test
+	public void testResultWindowExpires() throws Exception {
+		StubTransport stub = new StubTransport();
+		SingleFlightTransport transport = new SingleFlightTransport(stub);
+		transport.setResultWindow(50);
+
+		stub.respond();
+		Response response = transport.sendRequest(StubTransport.inquiry("S1"));
+		assertSame(response, transport.sendRequest(StubTransport.inquiry("S1")));
+		assertEquals(1, stub.calls.size());
+
+		Thread.sleep(150);
+		stub.respond();
+		transport.sendRequest(StubTransport.inquiry("S1"));
+		assertEquals(2, stub.calls.size());
+	}
+
+	@Test
+	public void testChangedAndUnkeyedRequestsAreSent() throws Exception {
+		StubTransport stub = new StubTransport();
+		SingleFlightTransport transport = new SingleFlightTransport(stub);
+
+		stub.respond().respond().respond().respond().respond();
+		transport.sendRequest(StubTransport.inquiry("S1"));
+		Map<String, String> changed = StubTransport.inquiry("S1");
+		changed.put("TOTL", "1000");
+		transport.sendRequest(changed);
+		transport.sendRequest(StubTransport.inquiry(null));
+		transport.sendRequest(StubTransport.inquiry(null));
+		transport.sendRequest(StubTransport.update("T1"));
+		assertEquals(5, stub.calls.size());
+		assertEquals(0, transport.getSharedCount());
+	}
+
+	@Test
+	public void testFailuresAreNotKept() throws Exception {
+		StubTransport stub = new StubTransport();
+		SingleFlightTransport transport = new SingleFlightTransport(stub);
+
+		stub.fail(new RisTransportException("An error occurred while sending the RIS request", new ConnectException("refused")));
+		assertThrows(RisTransportException.class, () -> transport.sendRequest(StubTransport.inquiry("S1")));
+		stub.respond();
+		transport.sendRequest(StubTransport.inquiry("S1"));
+		assertEquals(2, stub.calls.size());
+	}
+}
@@ -0,0 +1,141 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisTransportException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport for the policy transport tests. Every request is recorded as a {@link Call}
+ * whose future the test completes, unless an outcome was queued for it with
+ * {@link #respond()} or {@link #fail(Throwable)}.
+ */
+class StubTransport extends Transport {
+
+	final List<Call> calls = new CopyOnWriteArrayList<>();
+
+	private final Queue<Object> outcomes = new ArrayDeque<>();
+
+	/**
+	 * Answer the next request that has no outcome yet with a successful response.
+	 */
+	synchronized StubTransport respond() {
+		outcomes.add(response());
+		return this;
+	}
+
+	/**
+	 * Fail the next request that has no outcome yet.
+	 */
+	synchronized StubTransport fail(Throwable error) {
+		outcomes.add(error);
+		return this;
+	}
+
+	@Override
+	public Response sendRequest(Map<String, String> params) throws RisTransportException {
+		return awaitResponse(sendRequestAsync(params));
+	}
+
+	@Override
+	public CompletableFuture<Response> sendRequestAsync(Map<String, String> params) {
+		return send(params, null);
+	}
+
+	@Override
+	public CompletableFuture<Response> sendRequestAsync(Map<String, String> params, Duration timeout) {
+		return send(params, timeout);
+	}
+
+	private CompletableFuture<Response> send(Map<String, String> params, Duration timeout) {
+		Call call = new Call(params, timeout);
+		calls.add(call);
+		Object outcome;
+		synchronized (this) {
+			outcome = outcomes.poll();
+		}
+		if (outcome instanceof Response) {
+			call.future.complete((Response) outcome);
+		} else if (outcome != null) {
+			call.future.completeExceptionally((Throwable) outcome);
+		}
+		return call.future;
+	}
+
+	Call call(int index) {
+		return calls.get(index);
+	}
+
+	/**
+	 * Wait until the given number of requests was sent.
+	 */
+	void awaitCalls(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (calls.size() < count) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("expected " + count + " requests, got " + calls.size());
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	static Response response() {
+		Map<String, String> params = new HashMap<>();
+		params.put("MODE", "Q");
+		params.put("AUTO", "A");
+		return new Response(params);
+	}
+
+	static Map<String, String> inquiry(String sessionId) {
+		Map<String, String> params = new HashMap<>();
+		params.put("MERC", "999666");
+		params.put("MODE", "Q");
+		if (sessionId != null) {
+			params.put("SESS", sessionId);
+		}
+		return params;
+	}
+
+	static Map<String, String> update(String transactionId) {
+		Map<String, String> params = new HashMap<>();
+		params.put("MERC", "999666");
+		params.put("MODE", "U");
+		if (transactionId != null) {
+			params.put("TRAN", transactionId);
+		}
+		return params;
+	}
+
+	static final class Call {
+
+		final Map<String, String> params;
+
+		/**
+		 * Time budget the request was sent with, null for none.
+		 */
+		final Duration timeout;
+
+		final CompletableFuture<Response> future = new CompletableFuture<>();
+
+		Call(Map<String, String> params, Duration timeout) {
+			this.params = new HashMap<>(params);
+			this.timeout = timeout;
+		}
+
+		void respond() {
+			future.complete(response());
+		}
+
+		void fail(Throwable error) {
+			future.completeExceptionally(error);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.util.RisCircuitOpenException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisPoolExhaustedException;
+import com.kount.ris.util.RisThrottledException;
+import com.kount.ris.util.RisTransportException;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransportErrorsTest {
+
+	@Test
+	public void testClassify() {
+		assertEquals(TransportErrors.Kind.CONNECT_FAILURE, classify(new ConnectException("refused")));
+		assertEquals(TransportErrors.Kind.CONNECT_FAILURE, classify(new UnknownHostException("risk.example")));
+		assertEquals(TransportErrors.Kind.CONNECT_FAILURE, classify(new ConnectTimeoutException("connect timed out")));
+		assertEquals(TransportErrors.Kind.READ_TIMEOUT, classify(new SocketTimeoutException("read timed out")));
+		assertEquals(TransportErrors.Kind.CONNECTION_LOST, classify(new SocketException("connection reset")));
+		assertEquals(TransportErrors.Kind.CONNECTION_LOST, classify(new NoHttpResponseException("no response")));
+		assertEquals(TransportErrors.Kind.OTHER, classify(new IOException("unreadable")));
+		assertEquals(TransportErrors.Kind.OTHER, TransportErrors.classify(new RisTransportException("failed")));
+
+		assertEquals(TransportErrors.Kind.POOL_EXHAUSTED, TransportErrors.classify(
+				new RisPoolExhaustedException("pool exhausted", new TimeoutException())));
+		assertEquals(TransportErrors.Kind.REJECTED, TransportErrors.classify(new RisCircuitOpenException("open")));
+		assertEquals(TransportErrors.Kind.REJECTED, TransportErrors.classify(new RisOverloadedException("overloaded")));
+		assertEquals(TransportErrors.Kind.THROTTLED, TransportErrors.classify(new RisThrottledException("busy", 429, 1000)));
+	}
+
+	@Test
+	public void testIsNotSent() {
+		assertTrue(TransportErrors.isNotSent(wrap(new ConnectException("refused"))));
+		assertTrue(TransportErrors.isNotSent(new RisPoolExhaustedException("pool exhausted", null)));
+		assertTrue(TransportErrors.isNotSent(new RisOverloadedException("overloaded")));
+		assertFalse(TransportErrors.isNotSent(wrap(new SocketTimeoutException("read timed out"))));
+		assertFalse(TransportErrors.isNotSent(wrap(new SocketException("connection reset"))));
+		assertFalse(TransportErrors.isNotSent(new RisThrottledException("busy", 503, 0)));
+	}
+
+	@Test
+	public void testUnwrap() {
+		RisTransportException error = new RisTransportException("failed");
+		assertSame(error, TransportErrors.unwrap(new CompletionException(new ExecutionException(error))));
+		assertSame(error, TransportErrors.unwrap(error));
+	}
+
+	private static TransportErrors.Kind classify(IOException cause) {
+		return TransportErrors.classify(wrap(cause));
+	}
+
+	private static RisTransportException wrap(IOException cause) {
+		return new RisTransportException("An error occurred while sending the RIS request", cause);
+	}
+}
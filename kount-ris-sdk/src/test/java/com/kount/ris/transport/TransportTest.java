@@ -0,0 +1,94 @@
+package com.kount.ris.transport;
+
+import com.kount.ris.Response;
+import com.kount.ris.util.RisDeadlineExceededException;
+import com.kount.ris.util.RisOverloadedException;
+import com.kount.ris.util.RisTransportException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransportTest {
+
+	@Test
+	public void testBlockingTransportReturnsAtTheDeadline() throws Exception {
+		BlockingTransport transport = new BlockingTransport();
+		try {
+			long start = System.nanoTime();
+			CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry(null), Duration.ofMillis(50));
+			// the blocking send runs on a worker thread, not on the caller's
+			assertFalse(result.isDone());
+			assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+
+			ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof RisDeadlineExceededException);
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+			assertThrows(RisDeadlineExceededException.class,
+					() -> transport.sendRequest(StubTransport.inquiry(null), Duration.ofMillis(50)));
+		} finally {
+			transport.gate.countDown();
+		}
+	}
+
+	@Test
+	public void testSpentBudgetIsNotSent() {
+		BlockingTransport transport = new BlockingTransport();
+		transport.gate.countDown();
+		assertThrows(RisDeadlineExceededException.class,
+				() -> transport.sendRequest(StubTransport.inquiry(null), Duration.ZERO));
+		assertEquals(1, transport.started.getCount());
+	}
+
+	@Test
+	public void testBusyWorkersFailFast() throws Exception {
+		BlockingTransport transport = new BlockingTransport();
+		Scheduler.setMaxWorkers(2);
+		try {
+			// idle workers of earlier tests may still take a request or two
+			CompletableFuture<Response> rejected = null;
+			for (int i = 0; i < 10 && rejected == null; i++) {
+				CompletableFuture<Response> result = transport.sendRequestAsync(StubTransport.inquiry(null), Duration.ofSeconds(5));
+				if (result.isDone()) {
+					rejected = result;
+				}
+			}
+			assertNotNull(rejected);
+			ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+			assertTrue(e.getCause() instanceof RisOverloadedException);
+		} finally {
+			transport.gate.countDown();
+			Scheduler.setMaxWorkers(Scheduler.DEFAULT_MAX_WORKERS);
+		}
+		assertNotNull(transport.sendRequest(StubTransport.inquiry(null), Duration.ofSeconds(5)));
+	}
+
+	private static class BlockingTransport extends Transport {
+
+		final CountDownLatch started = new CountDownLatch(1);
+
+		final CountDownLatch gate = new CountDownLatch(1);
+
+		@Override
+		public Response sendRequest(Map<String, String> params) throws RisTransportException {
+			started.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RisTransportException("interrupted", e);
+			}
+			return StubTransport.response();
+		}
+	}
+}